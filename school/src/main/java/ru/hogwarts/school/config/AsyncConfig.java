@@ -0,0 +1,50 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Фоновые пулы приложения
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Пул генерации уменьшенных копий аватаров. Очередь ограничена: при переполнении задача отбрасывается, <br/>
+     * недостающая копия будет создана при первом запросе (AvatarRenditions.getOrCreate)
+     */
+    @Bean(name = "avatarRenditionExecutor")
+    public ThreadPoolTaskExecutor avatarRenditionExecutor(@Value("${avatars.renditions.pool-size:2}") int poolSize,
+                                                          @Value("${avatars.renditions.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("avatar-rendition-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    /**
+     * Пул параллельных запросов сводки /student/stats. Размер пула ограничивает число одновременно занятых ими соединений; <br/>
+     * при заполненной очереди запрос выполняется в вызывающем потоке, то есть последовательно, а не отклоняется
+     */
+    @Bean(name = "studentStatsExecutor")
+    public ThreadPoolTaskExecutor studentStatsExecutor(@Value("${school.stats.pool-size:6}") int poolSize,
+                                                       @Value("${school.stats.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("student-stats-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+}
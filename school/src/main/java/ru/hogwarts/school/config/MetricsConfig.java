@@ -0,0 +1,23 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Таймеры методов сервисов: классы сервисов помечены @Timed("school.service"), аспект добавляет теги class и method. <br/>
+ * Эндпоинты (http.server.requests), запросы репозиториев (spring.data.repository.invocations) и пул соединений <br/>
+ * (hikaricp.connections.*) измеряются автоконфигурацией Actuator; все метрики отдаются на /actuator/prometheus
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "school.service";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Периодические задачи приложения (сверка StudentAggregate)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,76 +1,272 @@
 package ru.hogwarts.school.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.Cursor;
+import ru.hogwarts.school.dto.AvatarView;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.service.AvatarCache;
+import ru.hogwarts.school.service.AvatarMetrics;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarTooLargeException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+/**
+ * Скачивание аватаров поддерживает условные запросы (ETag - SHA-256 содержимого, Last-Modified - время изменения файла) <br/>
+ * и запросы части файла (Range). Файл отдается без копирования через heap: sendfile средствами Tomcat, если он доступен, иначе FileChannel.transferTo
+ */
 @RestController
 @RequestMapping("/avatar")
 public class AvatarController {
 
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePublic();
+
 private final AvatarService avatarService;
+    private final AvatarMetrics avatarMetrics;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarMetrics avatarMetrics) {
         this.avatarService = avatarService;
+        this.avatarMetrics = avatarMetrics;
     }
 
     @PostMapping(value = "/{studentID}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> uploadAvatar(@PathVariable Long studentID, @RequestParam MultipartFile avatar) throws IOException {
-        if (avatar.getSize() >= 300 * 300) {
-            return ResponseEntity.badRequest().body("File is too big");
-        }
         avatarService.uploadAvatar(studentID, avatar);
+        avatarMetrics.recordUpload(avatar.getSize());
         return ResponseEntity.ok().build();
     }
 
-    @GetMapping(value = "/{id}/avatar/fromDB")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) throws IOException {
-        Avatar avatar = avatarService.findAvatar(id);
+    /**
+     * Превышение avatars.max-file-size: multipart отклоняет запрос по Content-Length или при разборе, <br/>
+     * AvatarStorage - по заявленному размеру файла или при чтении (AvatarTooLargeException)
+     */
+    @ExceptionHandler({MaxUploadSizeExceededException.class, AvatarTooLargeException.class})
+    public ResponseEntity<String> handleMaxUploadSizeExceeded(RuntimeException e) {
+        return ResponseEntity.badRequest().body("File is too big");
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
+    /**
+     * Содержимое из AvatarCache (вне heap) пишется в ответ напрямую, без промежуточного byte[]
+     */
+    @GetMapping(value = "/{id}/avatar/fromDB")
+    public void downloadAvatar(@PathVariable Long id, ServletWebRequest webRequest, HttpServletResponse response) throws IOException {
+        Optional<AvatarCache.Entry> content = avatarService.findAvatarContent(id);
+        if (content.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String eTag = "\"" + content.get().hash() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+        if (webRequest.checkNotModified(eTag)) {
+            return;
+        }
+        ByteBuffer data = content.get().data();
+        response.setContentType(content.get().mediaType());
+        response.setContentLength(data.remaining());
+        avatarMetrics.recordDownloadFromDb(data.remaining());
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
 
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+    @GetMapping(value = "/cache")
+    public AvatarCache.Stats getCacheStats() {
+        return avatarService.getCacheStats();
     }
 
     @GetMapping(value = "/{id}/avatar/fromFile")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    public void downloadAvatar(@PathVariable Long id, @RequestParam(required = false) Integer size,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
         Avatar avatar = avatarService.findAvatar(id);
+        if (avatar.getId() == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (size != null) {
+            if (!avatarService.isRenditionSizeSupported(size)) {
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+                return;
+            }
+            Optional<Path> rendition = avatarService.findAvatarRendition(avatar, size);
+            if (rendition.isPresent()) {
+                sendFile(rendition.get(), avatarService.getRenditionMediaType(), getETag(avatar, size), true, request, response);
+                return;
+            }
+        }
+        sendFile(Path.of(avatar.getFilePath()), avatar.getMediaType(), getETag(avatar), false, request, response);
+    }
+
+    /**
+     * Отдает файл с учетом If-None-Match/If-Modified-Since (304 без чтения файла) и Range/If-Range (206 или 416)
+     */
+    private void sendFile(Path path, String mediaType, String eTag, boolean rendition,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (NoSuchFileException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (eTag != null ? webRequest.checkNotModified(eTag, lastModified) : webRequest.checkNotModified(lastModified)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            long count = size;
 
-        Path path = Path.of(avatar.getFilePath());
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+            HttpRange range = getSingleRange(request, eTag, lastModified);
+            if (range != null) {
+                start = range.getRangeStart(size);
+                long end = range.getRangeEnd(size);
+                if (start >= size || start > end) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+                count = end - start + 1;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            } else {
+                response.setStatus(HttpStatus.OK.value());
+            }
+            response.setContentType(mediaType);
+            response.setContentLengthLong(count);
+            avatarMetrics.recordDownloadFromFile(count, rendition);
 
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
-            is.transferTo(os);
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, start + count);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
         }
     }
 
+    /**
+     * Диапазон из заголовка Range. Несколько диапазонов, некорректный заголовок или несовпавший If-Range - отдается весь файл
+     */
+    private HttpRange getSingleRange(HttpServletRequest request, String eTag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(request, ifRange, eTag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-Range сравнивается только сильно (RFC 9110, 13.1.5): слабый ETag (W/"...") не совпадает никогда. <br/>
+     * Значение, которое не ETag и не дата, тоже не совпадает - отдается весь файл, а не 500
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String ifRange, String eTag, long lastModified) {
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сильный валидатор - SHA-256 содержимого, одинаковый для всех копий файла
+     */
+    private String getETag(Avatar avatar) {
+        return avatar.getContent() == null ? null : "\"" + avatar.getContent().getHash() + "\"";
+    }
+
+    private String getETag(Avatar avatar, int size) {
+        return "\"" + avatar.getContent().getHash() + "-" + size + "\"";
+    }
+
     @GetMapping()
-    public Collection<Avatar> getAllAvatarsByPage(@RequestParam(defaultValue = "1") int pageNumber, @RequestParam(defaultValue = "10") int pageSize) {
+    public Collection<AvatarView> getAllAvatarsByPage(@RequestParam(defaultValue = "1") int pageNumber, @RequestParam(defaultValue = "10") int pageSize) {
         return avatarService.getAllAvatarsByPage(pageNumber-1,pageSize);
     }
 
+    /**
+     * Постраничный список по курсору: первая страница - пустой cursor, следующая - значение next из ответа
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPage<AvatarView>> getAvatarsByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        long lastId;
+        try {
+            lastId = Cursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(avatarService.getAvatarsAfter(lastId, limit));
+    }
+
 }
@@ -1,21 +1,41 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.hogwarts.school.dto.FacultyDetails;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultyView;
+import ru.hogwarts.school.dto.MergePatch;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.ExportFormat;
+import ru.hogwarts.school.service.ExportService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.PatchService;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * ResponseEntity.notFound().build() - когда ресурс не был найден, поскольку это соответствует коду состояния HTTP 404 Not Found. <br/>
@@ -26,10 +46,18 @@ import java.util.Collections;
 @RequestMapping("/faculty")
 public class FacultyController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     private final FacultyService facultyService;
+    private final PatchService patchService;
+    private final ExportService exportService;
 
-    public FacultyController(FacultyService facultyService) {
+    public FacultyController(FacultyService facultyService, ExportService exportService, PatchService patchService) {
         this.facultyService = facultyService;
+        this.exportService = exportService;
+        this.patchService = patchService;
     }
 
     @PostMapping
@@ -38,22 +66,130 @@ public class FacultyController {
         return ResponseEntity.ok(faculty1);
     }
 
+    /**
+     * Выгрузка всех записей (format=ndjson или csv): ответ пишется по мере чтения из базы, не собираясь в памяти
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFaculties(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        StreamingResponseBody body = out -> exportService.exportFaculties(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("faculties." + exportFormat.getExtension()).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Факультет с ETag по версии. If-None-Match с текущей версией - 304 Not Modified по запросу одной версии, <br/>
+     * без чтения и сериализации факультета
+     */
     @GetMapping("{id}")
-    public ResponseEntity<Faculty> getFacultyId(@PathVariable Long id) {
+    public ResponseEntity<Faculty> getFacultyId(@PathVariable Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long version = facultyService.getFacultyVersion(id);
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (VersionETags.noneMatchHits(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(VersionETags.of(version)).build();
+            }
+        }
         Faculty faculty = facultyService.getFacultyId(id);
         if (faculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculty);
+        return VersionETags.ok(faculty.getVersion()).body(faculty);
     }
 
+    /**
+     * Факультет вместе со страницей студентов (expand=students, page с нуля, size до 100)
+     */
+    @GetMapping(value = "{id}", params = "expand")
+    public ResponseEntity<FacultyDetails> getFacultyDetails(@PathVariable Long id,
+                                                            @RequestParam String expand,
+                                                            @RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(defaultValue = "20") int size) {
+        if (!"students".equals(expand) || page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        FacultyDetails details = facultyService.getFacultyDetails(id, page, size);
+        if (details == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(details);
+    }
+
+    /**
+     * If-Match с устаревшей версией - 412 Precondition Failed, устаревшая версия в теле - 409 Conflict. <br/>
+     * Без If-Match и версии в теле обновление безусловное
+     */
     @PutMapping()
-    public ResponseEntity<Faculty> updateFaculty(@RequestBody Faculty faculty) {
-        Faculty faculty2 = facultyService.updateFaculty(faculty);
+    public ResponseEntity<Faculty> updateFaculty(@RequestBody Faculty faculty,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch != null) {
+            Long version = facultyService.getFacultyVersion(faculty.getId());
+            if (version == null || !VersionETags.ifMatchHits(ifMatch, version)) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            faculty.setVersion(version);
+        }
+        Faculty faculty2;
+        try {
+            faculty2 = facultyService.updateFaculty(faculty);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        }
         if (faculty2 == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculty2);
+        return VersionETags.ok(faculty2.getVersion()).body(faculty2);
+    }
+
+    /**
+     * Частичное обновление по JSON Merge Patch одним UPDATE без чтения факультета: 204 No Content, 404 - если строка не изменена. <br/>
+     * Версия из If-Match проверяется в том же UPDATE (412 при несовпадении), тогда в ответе и ETag новой версии
+     */
+    @PatchMapping(value = "{id}", consumes = MergePatch.MEDIA_TYPE)
+    public ResponseEntity<Void> patchFaculty(@PathVariable Long id, @RequestBody JsonNode body,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        FacultyPatch patch;
+        try {
+            patch = FacultyPatch.of(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Long version = null;
+        if (ifMatch != null) {
+            version = VersionETags.versionOf(ifMatch);
+            if (version == null) {
+                version = facultyService.getFacultyVersion(id);
+                if (version == null || !VersionETags.ifMatchHits(ifMatch, version)) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+                }
+            }
+        }
+        boolean patched;
+        try {
+            patched = patchService.patchFaculty(id, patch, version);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (!patched) {
+            return version != null && facultyService.getFacultyVersion(id) != null
+                    ? ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()
+                    : ResponseEntity.notFound().build();
+        }
+        if (version == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.noContent().eTag(VersionETags.of(patch.isEmpty() ? version : version + 1)).build();
     }
 
     @DeleteMapping("{id}")
@@ -63,7 +199,7 @@ public class FacultyController {
     }
 
     @GetMapping("/filterColor")
-    public ResponseEntity<Collection<Faculty>> filterColorFaculty (@RequestParam String color) {
+    public ResponseEntity<Collection<FacultyView>> filterColorFaculty (@RequestParam String color) {
         if (color != null && !color.isBlank()){
             return ResponseEntity.ok(facultyService.filterColor(color));
         }
@@ -71,14 +207,37 @@ public class FacultyController {
     }
 
     @GetMapping("/nameOrColor")
-    public ResponseEntity<Collection<Faculty>> findByNameOrColor(@RequestParam String findParameter) {
-        Collection<Faculty> faculties = facultyService.findByNameOrColor(findParameter);
+    public ResponseEntity<Collection<FacultyView>> findByNameOrColor(@RequestParam String findParameter) {
+        Collection<FacultyView> faculties = facultyService.findByNameOrColor(findParameter);
         return ResponseEntity.ok(faculties);
     }
 
+    /**
+     * Страница студентов факультета (page с нуля, size до 100). Тело - список, как и раньше, а сведения о странице - <br/>
+     * в заголовках: X-Total-Count - всего студентов, Link rel="next" - следующая страница, если она есть. <br/>
+     * Неизвестный факультет - 404
+     */
     @GetMapping("/getStudentsFaculty/{id}")
-    public ResponseEntity<Collection<Student>> getStudentsByFaculty(@PathVariable Long id) {
-        return ResponseEntity.ok(facultyService.getStudentsByFaculty(id));
+    public ResponseEntity<List<StudentView>> getStudentsByFaculty(@PathVariable Long id,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Page<StudentView> students = facultyService.getStudentsByFaculty(id, page, size);
+        if (students == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, Long.toString(students.getTotalElements()));
+        if (students.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", page + 1)
+                    .replaceQueryParam("size", size)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(students.getContent());
     }
 
     @GetMapping("/longestFacultyName")
@@ -1,26 +1,33 @@
 package ru.hogwarts.school.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.CacheRegionStats;
+import ru.hogwarts.school.service.CacheStatisticsService;
 import ru.hogwarts.school.service.InfoService;
 
+import java.util.List;
+
 @RestController
 public class InfoController {
 
-    @Value("${server.port}")
-    private Integer serverPort;
-
-    @GetMapping("/port")
-    public Integer getPort () {
-        return serverPort;
-    }
-
-
     private final InfoService infoService;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final Environment environment;
 
-    public InfoController(InfoService infoService) {
+    public InfoController(InfoService infoService, CacheStatisticsService cacheStatisticsService, Environment environment) {
         this.infoService = infoService;
+        this.cacheStatisticsService = cacheStatisticsService;
+        this.environment = environment;
+    }
+
+    /**
+     * Порт, который сервер действительно слушает (local.server.port появляется после его запуска), - и при server.port=0
+     */
+    @GetMapping("/port")
+    public Integer getPort () {
+        return environment.getProperty("local.server.port", Integer.class);
     }
 
     @GetMapping("/sum")
@@ -28,4 +35,9 @@ public class InfoController {
         return infoService.getSumArithmeticProgression();
     }
 
+    @GetMapping("/cache")
+    public List<CacheRegionStats> getCacheStats() {
+        return cacheStatisticsService.getRegionStats();
+    }
+
 }
@@ -1,21 +1,54 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.Cursor;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.MergePatch;
+import ru.hogwarts.school.dto.StudentImportRow;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.ExportFormat;
+import ru.hogwarts.school.service.ExportService;
+import ru.hogwarts.school.service.PatchService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.StudentStatsService;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * ResponseEntity.notFound().build() - когда ресурс не был найден, поскольку это соответствует коду состояния HTTP 404 Not Found. <br/>
@@ -26,34 +59,183 @@ import java.util.Collections;
 @RequestMapping("/student")
 public class StudentController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final StudentService studentService;
+    private final ExportService exportService;
+    private final StudentImportService studentImportService;
+    private final StudentStatsService studentStatsService;
+    private final PatchService patchService;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentImportService studentImportService,
+                             ExportService exportService, StudentStatsService studentStatsService,
+                             PatchService patchService) {
         this.studentService = studentService;
+        this.exportService = exportService;
+        this.studentImportService = studentImportService;
+        this.studentStatsService = studentStatsService;
+        this.patchService = patchService;
     }
 
+    /**
+     * Имя студента уникально (student_name_unique_index): студент с занятым именем - 409 Conflict
+     */
     @PostMapping
     public ResponseEntity<Student> createStudent(@RequestBody Student student) {
-        Student student1 = studentService.createStudent(student);
+        Student student1;
+        try {
+            student1 = studentService.createStudent(student);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok(student1);
     }
 
+    /**
+     * Список студентов по курсору: без cursor - первая страница, дальше - значение next из ответа
+     */
+    @GetMapping
+    public ResponseEntity<CursorPage<StudentView>> getStudentsByCursor(@RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        long lastId;
+        try {
+            lastId = Cursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.ok(studentService.getStudentsAfter(lastId, limit));
+    }
+
+    /**
+     * Массовый импорт с обновлением по имени. Ответ - отчет с ошибками по строкам, успешные строки сохраняются в любом случае
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportReport> importStudents(@RequestBody List<StudentImportRow> rows) {
+        return ResponseEntity.ok(studentImportService.importStudents(rows));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportReport> importStudentsCsv(Reader body) throws IOException {
+        return ResponseEntity.ok(studentImportService.importStudentsCsv(body));
+    }
+
+    /**
+     * Выгрузка всех записей (format=ndjson или csv): ответ пишется по мере чтения из базы, не собираясь в памяти
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        StreamingResponseBody body = out -> exportService.exportStudents(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("students." + exportFormat.getExtension()).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Студент с ETag по версии. If-None-Match с текущей версией - 304 Not Modified по запросу одной версии, <br/>
+     * без чтения и сериализации студента
+     */
     @GetMapping("{id}")
-    public ResponseEntity<Student> getStudentId(@PathVariable Long id) {
+    public ResponseEntity<Student> getStudentId(@PathVariable Long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long version = studentService.getStudentVersion(id);
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (VersionETags.noneMatchHits(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(VersionETags.of(version)).build();
+            }
+        }
         Student student = studentService.getStudentId(id);
         if (student == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(student);
+        return VersionETags.ok(student.getVersion()).body(student);
     }
 
+    /**
+     * If-Match с устаревшей версией - 412 Precondition Failed, устаревшая версия в теле или занятое имя - 409 Conflict. <br/>
+     * Без If-Match и версии в теле обновление безусловное
+     */
     @PutMapping()
-    public ResponseEntity<Student> updateStudent(@RequestBody Student student) {
-        Student student2 = studentService.updateStudent(student);
+    public ResponseEntity<Student> updateStudent(@RequestBody Student student,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (ifMatch != null) {
+            Long version = studentService.getStudentVersion(student.getId());
+            if (version == null || !VersionETags.ifMatchHits(ifMatch, version)) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            student.setVersion(version);
+        }
+        Student student2;
+        try {
+            student2 = studentService.updateStudent(student);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         if (student2 == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(student2);
+        return VersionETags.ok(student2.getVersion()).body(student2);
+    }
+
+    /**
+     * Частичное обновление по JSON Merge Patch одним UPDATE без чтения студента: 204 No Content, 404 - если строка не изменена. <br/>
+     * Версия из If-Match проверяется в том же UPDATE (412 при несовпадении), тогда в ответе и ETag новой версии. <br/>
+     * Занятое имя - 409 Conflict, как у POST и PUT; несуществующий факультет - 400
+     */
+    @PatchMapping(value = "{id}", consumes = MergePatch.MEDIA_TYPE)
+    public ResponseEntity<Void> patchStudent(@PathVariable Long id, @RequestBody JsonNode body,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        StudentPatch patch;
+        try {
+            patch = StudentPatch.of(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        Long version = null;
+        if (ifMatch != null) {
+            version = VersionETags.versionOf(ifMatch);
+            if (version == null) {
+                version = studentService.getStudentVersion(id);
+                if (version == null || !VersionETags.ifMatchHits(ifMatch, version)) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+                }
+            }
+        }
+        boolean patched;
+        try {
+            patched = patchService.patchStudent(id, patch, version);
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(isUniqueViolation(e) ? HttpStatus.CONFLICT : HttpStatus.BAD_REQUEST).build();
+        }
+        if (!patched) {
+            return version != null && studentService.getStudentVersion(id) != null
+                    ? ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()
+                    : ResponseEntity.notFound().build();
+        }
+        if (version == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.noContent().eTag(VersionETags.of(patch.isEmpty() ? version : version + 1)).build();
+    }
+
+    private static boolean isUniqueViolation(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException violation
+                && violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
     }
 
     @DeleteMapping("{id}")
@@ -63,7 +245,7 @@ public class StudentController {
     }
 
     @GetMapping("/filterAge")
-    public ResponseEntity<Collection<Student>> filterAgeStudent(@RequestParam int age) {
+    public ResponseEntity<Collection<StudentView>> filterAgeStudent(@RequestParam int age) {
         if (age > 0){
             return ResponseEntity.ok(studentService.filterAge(age));
         }
@@ -71,10 +253,18 @@ public class StudentController {
     }
 
     @GetMapping("/ageBetween")
-    public ResponseEntity<Collection<Student>> findByAgeBetween(@RequestParam int minAge, @RequestParam int maxAge) {
+    public ResponseEntity<Collection<StudentView>> findByAgeBetween(@RequestParam int minAge, @RequestParam int maxAge) {
         return ResponseEntity.ok(studentService.findByAgeBetween(minAge, maxAge));
     }
 
+    /**
+     * Число студентов по возрастам: ключ - возраст, значение - количество; facultyId - только студенты этого факультета
+     */
+    @GetMapping("/ageHistogram")
+    public Map<Integer, Long> getAgeHistogram(@RequestParam(required = false) Long facultyId) {
+        return studentService.getAgeHistogram(facultyId);
+    }
+
     @GetMapping("/getFacultyStudent/{id}")
     public ResponseEntity<Faculty> getFacultyByStudent(@PathVariable Long id) {
         return ResponseEntity.ok(studentService.getFacultyByStudent(id));
@@ -91,10 +281,48 @@ public class StudentController {
     }
 
     @GetMapping("/getLastFiveStudents")
-    public Collection<Student> getLastFiveStudents() {
+    public Collection<StudentView> getLastFiveStudents() {
         return studentService.getLastFiveStudents();
     }
 
+    /**
+     * Число студентов, средний возраст и последние пять одним ответом; запросы к базе идут параллельно. <br/>
+     * Если какой-то из них не уложился в school.stats.query-timeout (прерван базой или не дождался пула) - 504 Gateway Timeout
+     */
+    @GetMapping("/stats")
+    public CompletableFuture<ResponseEntity<StudentStats>> getStudentStats() {
+        return studentStatsService.getStats()
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    if (isTimeout(e)) {
+                        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+                    }
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                });
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof QueryTimeoutException
+                    || cause instanceof TransactionTimedOutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Имена студентов по префиксу без учета регистра, по алфавиту; поиск идет по индексу в памяти (в режиме STREAM - проходом по таблице)
+     */
+    @GetMapping("/namesStartingWith")
+    public ResponseEntity<List<String>> findNamesStartingWith(@RequestParam String prefix,
+                                                              @RequestParam(defaultValue = "20") int limit) {
+        if (prefix.isBlank() || limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.ok(studentService.findNamesStartingWith(prefix, limit));
+    }
+
     @GetMapping("/namesStartingWithA")
     public Collection<String> getStudentNamesStartingWithA() {
         return studentService.getStudentNamesStartingWithA();
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.ETag;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * ETag студента и факультета - номер версии строки (@Version) в кавычках, например "3". <br/>
+ * Версия меняется при каждом обновлении, поэтому это сильный валидатор: его можно сравнивать и для If-None-Match, <br/>
+ * и для If-Match, не вычисляя хэш от тела ответа
+ */
+final class VersionETags {
+
+    private VersionETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * 200 OK с ETag; сущность без версии (еще не сохранена) отдается без ETag
+     */
+    static ResponseEntity.BodyBuilder ok(Long version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        return version == null ? builder : builder.eTag(of(version));
+    }
+
+    /**
+     * If-None-Match: слабое сравнение (W/"3" совпадает с "3"), "*" совпадает с любой версией
+     */
+    static boolean noneMatchHits(String ifNoneMatch, long version) {
+        return matches(ifNoneMatch, version, false);
+    }
+
+    /**
+     * If-Match: только сильное сравнение, "*" - ресурс существует в любой версии
+     */
+    static boolean ifMatchHits(String ifMatch, long version) {
+        return matches(ifMatch, version, true);
+    }
+
+    /**
+     * Версия из If-Match с одним сильным ETag или null - для "*", списка и чужих значений проверка идет через ifMatchHits
+     */
+    static Long versionOf(String ifMatch) {
+        List<ETag> eTags = ETag.parse(ifMatch);
+        if (eTags.size() != 1 || eTags.get(0).isWildcard() || eTags.get(0).weak()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(eTags.get(0).tag());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String header, long version, boolean strong) {
+        ETag current = new ETag(Long.toString(version), false);
+        for (ETag eTag : ETag.parse(header)) {
+            if (eTag.isWildcard() || eTag.compare(current, strong)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
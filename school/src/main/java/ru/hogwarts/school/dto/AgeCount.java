@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Число студентов одного возраста - строка гистограммы возрастов
+ */
+public record AgeCount(int age, long count) {
+}
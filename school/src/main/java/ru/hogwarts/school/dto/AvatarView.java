@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Аватар в списках: вместо вложенного студента - только его id, студент при выборке не загружается
+ */
+public record AvatarView(Long id, String filePath, long fileSize, String mediaType, Long studentId) {
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Статистика региона кэша второго уровня Hibernate (сущности, коллекции или результаты запросов)
+ */
+public record CacheRegionStats(String region, long hits, long misses, long puts, long elementsInMemory, double hitRatio) {
+
+    public static CacheRegionStats of(String region, long hits, long misses, long puts, long elementsInMemory) {
+        long requests = hits + misses;
+        return new CacheRegionStats(region, hits, misses, puts, elementsInMemory, requests == 0 ? 0 : (double) hits / requests);
+    }
+
+}
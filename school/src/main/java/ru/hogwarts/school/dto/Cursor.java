@@ -0,0 +1,38 @@
+package ru.hogwarts.school.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: id последней отданной записи в base64url. <br/>
+ * Клиент не должен разбирать курсор - формат можно менять, сохраняя префикс версии
+ */
+public final class Cursor {
+
+    private static final String PREFIX = "v1:";
+
+    private Cursor() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Пустой курсор - первая страница
+     *
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        if (!value.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Unsupported cursor: " + cursor);
+        }
+        return Long.parseLong(value.substring(PREFIX.length()));
+    }
+
+}
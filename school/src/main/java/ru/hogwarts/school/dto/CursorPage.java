@@ -0,0 +1,23 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Страница keyset-пагинации: next - курсор следующей страницы или null, если страница последняя
+ */
+public record CursorPage<T>(List<T> items, String next) {
+
+    /**
+     * Страница из limit + 1 строк, выбранных запросом WHERE id > :lastId ORDER BY id: лишняя строка только <br/>
+     * показывает, что есть следующая страница, и в ответ не попадает
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, ToLongFunction<T> id) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(List.copyOf(items), Cursor.encode(id.applyAsLong(items.get(limit - 1))));
+    }
+
+}
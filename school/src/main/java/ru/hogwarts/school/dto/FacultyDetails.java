@@ -0,0 +1,21 @@
+package ru.hogwarts.school.dto;
+
+import org.springframework.data.domain.Page;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.List;
+
+/**
+ * Факультет со страницей своих студентов - ответ GET /faculty/{id}?expand=students
+ */
+public record FacultyDetails(Long id, String name, String color, StudentsPage students) {
+
+    public record StudentsPage(List<StudentView> items, int page, int size, long total) {
+    }
+
+    public static FacultyDetails of(Faculty faculty, Page<StudentView> students) {
+        return new FacultyDetails(faculty.getId(), faculty.getName(), faculty.getColor(),
+                new StudentsPage(students.getContent(), students.getNumber(), students.getSize(), students.getTotalElements()));
+    }
+
+}
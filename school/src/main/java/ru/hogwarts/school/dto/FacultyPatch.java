@@ -0,0 +1,47 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Изменения факультета из JSON Merge Patch, см. StudentPatch
+ */
+public record FacultyPatch(Set<String> fields, String name, String color) {
+
+    public static final String NAME = "name";
+    public static final String COLOR = "color";
+
+    public static FacultyPatch of(JsonNode json) {
+        Set<String> fields = new LinkedHashSet<>();
+        String name = null;
+        String color = null;
+        for (Map.Entry<String, JsonNode> field : MergePatch.fields(json)) {
+            switch (field.getKey()) {
+                case NAME -> name = MergePatch.text(NAME, field.getValue());
+                case COLOR -> color = MergePatch.text(COLOR, field.getValue());
+                default -> throw MergePatch.unknown(field.getKey());
+            }
+            fields.add(field.getKey());
+        }
+        return new FacultyPatch(Collections.unmodifiableSet(fields), name, color);
+    }
+
+    public boolean has(String field) {
+        return fields.contains(field);
+    }
+
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    public FacultyView applyTo(FacultyView faculty) {
+        return new FacultyView(faculty.id(),
+                has(NAME) ? name : faculty.name(),
+                has(COLOR) ? color : faculty.color());
+    }
+
+}
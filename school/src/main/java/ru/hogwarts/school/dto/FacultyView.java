@@ -0,0 +1,14 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Faculty;
+
+/**
+ * Факультет в списках и результатах поиска, см. StudentView
+ */
+public record FacultyView(Long id, String name, String color) {
+
+    public static FacultyView of(Faculty faculty) {
+        return new FacultyView(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Итог импорта: сколько строк создано и обновлено, и ошибки по строкам (row - номер строки данных, начиная с 1)
+ */
+public record ImportReport(int total, int created, int updated, List<RowError> errors) {
+
+    public record RowError(int row, String name, String message) {
+    }
+
+}
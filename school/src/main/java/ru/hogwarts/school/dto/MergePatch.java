@@ -0,0 +1,56 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+/**
+ * Разбор JSON Merge Patch (RFC 7396) для StudentPatch и FacultyPatch: тело - JSON-объект, переданное поле заменяет значение, <br/>
+ * null стирает его, отсутствующее поле не меняется. Ошибки формата - IllegalArgumentException
+ */
+public final class MergePatch {
+
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private MergePatch() {
+    }
+
+    static Iterable<Map.Entry<String, JsonNode>> fields(JsonNode json) {
+        if (json == null || !json.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+        return json.properties();
+    }
+
+    static String text(String field, JsonNode value) {
+        if (value.isNull()) {
+            return null;
+        }
+        if (!value.isTextual()) {
+            throw new IllegalArgumentException(field + " must be a string or null");
+        }
+        return value.textValue();
+    }
+
+    static Long id(String field, JsonNode value) {
+        if (value.isNull()) {
+            return null;
+        }
+        if (!value.isIntegralNumber() || !value.canConvertToLong()) {
+            throw new IllegalArgumentException(field + " must be an id or null");
+        }
+        return value.longValue();
+    }
+
+    static int number(String field, JsonNode value) {
+        if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+            throw new IllegalArgumentException(field + " must be an integer");
+        }
+        return value.intValue();
+    }
+
+    static IllegalArgumentException unknown(String field) {
+        return new IllegalArgumentException("Field " + field + " cannot be patched");
+    }
+
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Результат нечеткого поиска: сущность (student или faculty), ее id, совпавшее поле, его значение <br/>
+ * и оценка сходства от 0 до 1 (коэффициент Дайса по триграммам)
+ */
+public record SearchHit(String type, Long id, String field, String text, double score) {
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Строка импорта студентов. facultyId необязателен
+ */
+public record StudentImportRow(String name, Integer age, Long facultyId) {
+}
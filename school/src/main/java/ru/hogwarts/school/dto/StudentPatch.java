@@ -0,0 +1,52 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Изменения студента из JSON Merge Patch: fields - переданные поля, остальные колонки не трогаются. <br/>
+ * name и facultyId можно стереть через null, age - нет; id и version не изменяются
+ */
+public record StudentPatch(Set<String> fields, String name, Integer age, Long facultyId) {
+
+    public static final String NAME = "name";
+    public static final String AGE = "age";
+    public static final String FACULTY_ID = "facultyId";
+
+    public static StudentPatch of(JsonNode json) {
+        Set<String> fields = new LinkedHashSet<>();
+        String name = null;
+        Integer age = null;
+        Long facultyId = null;
+        for (Map.Entry<String, JsonNode> field : MergePatch.fields(json)) {
+            switch (field.getKey()) {
+                case NAME -> name = MergePatch.text(NAME, field.getValue());
+                case AGE -> age = MergePatch.number(AGE, field.getValue());
+                case FACULTY_ID -> facultyId = MergePatch.id(FACULTY_ID, field.getValue());
+                default -> throw MergePatch.unknown(field.getKey());
+            }
+            fields.add(field.getKey());
+        }
+        return new StudentPatch(Collections.unmodifiableSet(fields), name, age, facultyId);
+    }
+
+    public boolean has(String field) {
+        return fields.contains(field);
+    }
+
+    public boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    public StudentRow applyTo(StudentRow row) {
+        return new StudentRow(row.id(),
+                has(NAME) ? name : row.name(),
+                has(AGE) ? age : row.age(),
+                has(FACULTY_ID) ? facultyId : row.facultyId());
+    }
+
+}
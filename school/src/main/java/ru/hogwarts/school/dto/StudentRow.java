@@ -0,0 +1,15 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Student;
+
+/**
+ * Строка студента для снимка в памяти: все колонки таблицы student, факультет - только id
+ */
+public record StudentRow(Long id, String name, int age, Long facultyId) {
+
+    public static StudentRow of(Student student) {
+        return new StudentRow(student.getId(), student.getName(), student.getAge(),
+                student.getFaculty() == null ? null : student.getFaculty().getId());
+    }
+
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Сводка для панели: число студентов, средний возраст и пять последних добавленных - ответ GET /student/stats. <br/>
+ * Средний возраст без студентов - null, как в /student/getAverageAgeStudents. <br/>
+ * Пока строки StudentAggregate нет (до первой сверки), число студентов - 0
+ */
+public record StudentStats(int count, Double averageAge, List<StudentView> lastFive) {
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Student;
+
+/**
+ * Студент в списках и результатах поиска - только колонки ответа, выбирается конструктором в JPQL <br/>
+ * (SELECT new ...), поэтому в контекст персистентности не попадает и при фиксации не проверяется
+ */
+public record StudentView(Long id, String name, int age) {
+
+    public static StudentView of(Student student) {
+        return new StudentView(student.getId(), student.getName(), student.getAge());
+    }
+
+}
@@ -0,0 +1,132 @@
+package ru.hogwarts.school.listener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentAggregate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поддерживает строку StudentAggregate в актуальном состоянии. <br/>
+ * Вставки, изменения возраста и удаления студентов за транзакцию копятся в приращение, которое перед фиксацией <br/>
+ * применяется одним UPDATE student_aggregate в той же транзакции: откат отменяет и его. <br/>
+ * Изменения мимо Hibernate (SQL напрямую, массовые запросы) сюда не попадают - их исправляет сверка в StudentAggregateService
+ */
+@Component
+public class StudentAggregateListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAggregateListener.class);
+
+    private static final String APPLY_DELTA = "UPDATE StudentAggregate a "
+            + "SET a.studentCount = a.studentCount + :count, a.ageSum = a.ageSum + :ageSum WHERE a.id = :id";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Приращение текущей транзакции каждой сессии; сессией одновременно пользуется один поток
+     */
+    private final Map<SharedSessionContractImplementor, Delta> pending = new ConcurrentHashMap<>();
+
+    public StudentAggregateListener(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    private static final class Delta {
+
+        private long count;
+        private long ageSum;
+
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Student student) {
+            add(event.getSession(), 1, student.getAge());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Student)) {
+            return;
+        }
+        if (event.getOldState() == null) {
+            logger.debug("Previous age of student with ID {} is unknown, left to reconciliation", event.getId());
+            return;
+        }
+        int age = event.getPersister().getPropertyIndex("age");
+        long ageDelta = (int) event.getState()[age] - (long) (int) event.getOldState()[age];
+        if (ageDelta != 0) {
+            add(event.getSession(), 0, ageDelta);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Student) {
+            int age = event.getPersister().getPropertyIndex("age");
+            add(event.getSession(), -1, -(int) event.getDeletedState()[age]);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void add(EventSource session, long count, long ageSum) {
+        Delta delta = pending.computeIfAbsent(session, key -> {
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) this::apply);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> pending.remove(completed));
+            return new Delta();
+        });
+        delta.count += count;
+        delta.ageSum += ageSum;
+    }
+
+    private void apply(SessionImplementor session) {
+        Delta delta = pending.remove(session);
+        if (delta == null || (delta.count == 0 && delta.ageSum == 0)) {
+            return;
+        }
+        int updated = session.createMutationQuery(APPLY_DELTA)
+                .setParameter("count", delta.count)
+                .setParameter("ageSum", delta.ageSum)
+                .setParameter("id", StudentAggregate.ID)
+                .executeUpdate();
+        if (updated == 0) {
+            logger.debug("Student aggregate row is missing, delta left to reconciliation");
+        }
+    }
+
+}
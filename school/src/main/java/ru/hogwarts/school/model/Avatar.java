@@ -2,14 +2,15 @@ package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 
-import java.util.Arrays;
 import java.util.Objects;
 
 @Entity
@@ -26,13 +27,17 @@ public class Avatar {
 
     private String mediaType;
 
-    @Lob
-    @JsonIgnore
-    private byte[] data;
-
     @OneToOne
     private Student student;
 
+    /**
+     * Файл с содержимым аватара по SHA-256 (общий для одинаковых загрузок)
+     */
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_hash")
+    private AvatarContent content;
+
     public Avatar() {
     }
 
@@ -76,14 +81,6 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public byte[] getData() {
-        return data;
-    }
-
-    public void setData(byte[] data) {
-        this.data = data;
-    }
-
     public Student getStudent() {
         return student;
     }
@@ -92,20 +89,33 @@ public class Avatar {
         this.student = student;
     }
 
+    public AvatarContent getContent() {
+        return content;
+    }
+
+    public void setContent(AvatarContent content) {
+        this.content = content;
+    }
+
+    /**
+     * Равенство по идентификатору: сравнение не затрагивает студента и ленивые связи. <br/>
+     * Несохраненный аватар равен только самому себе
+     */
     @Override
     public boolean equals(Object o) {
+        if (this == o) return true;
         if (!(o instanceof Avatar avatar)) return false;
-        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Objects.deepEquals(data, avatar.data) && Objects.equals(student, avatar.student);
+        return id != null && Objects.equals(id, avatar.id);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, filePath, fileSize, mediaType, Arrays.hashCode(data), student);
+        return getClass().hashCode();
     }
 
     @Override
     public String toString() {
-        return "Avatar{" + "id=" + id + ", filePath='" + filePath + '\'' + ", fileSize=" + fileSize + ", mediaType='" + mediaType + '\'' + ", data=" + Arrays.toString(data) + ", student=" + student + '}';
+        return "Avatar{" + "id=" + id + ", filePath='" + filePath + '\'' + ", fileSize=" + fileSize + ", mediaType='" + mediaType + '\'' + ", student=" + student + '}';
     }
 
 }
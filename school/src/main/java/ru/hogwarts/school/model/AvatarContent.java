@@ -0,0 +1,89 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.util.Objects;
+
+/**
+ * Файл аватара, адресуемый по SHA-256 его содержимого. <br/>
+ * Одинаковые загрузки хранятся один раз, referenceCount - число аватаров, ссылающихся на файл
+ */
+@Entity
+@Table(name = "avatar_content")
+public class AvatarContent {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "file_path", nullable = false)
+    private String filePath;
+
+    @Column(name = "file_size", nullable = false)
+    private long fileSize;
+
+    @Column(name = "reference_count", nullable = false)
+    private long referenceCount;
+
+    public AvatarContent() {
+    }
+
+    public AvatarContent(String hash, String filePath, long fileSize, long referenceCount) {
+        this.hash = hash;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.referenceCount = referenceCount;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getReferenceCount() {
+        return referenceCount;
+    }
+
+    public void setReferenceCount(long referenceCount) {
+        this.referenceCount = referenceCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AvatarContent content)) return false;
+        return Objects.equals(hash, content.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarContent{" + "hash='" + hash + '\'' + ", filePath='" + filePath + '\'' + ", fileSize=" + fileSize + ", referenceCount=" + referenceCount + '}';
+    }
+
+}
@@ -0,0 +1,67 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+import java.util.Objects;
+
+/**
+ * Копия содержимого аватара в базе, по одной записи на SHA-256 (как и AvatarContent). <br/>
+ * Вынесена из Avatar, чтобы запросы метаданных аватаров не читали байты изображений
+ */
+@Entity
+@Table(name = "avatar_data")
+public class AvatarData {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    public AvatarData() {
+    }
+
+    public AvatarData(String hash, byte[] data) {
+        this.hash = hash;
+        this.data = data;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AvatarData avatarData)) return false;
+        return Objects.equals(hash, avatarData.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarData{" + "hash='" + hash + '\'' + ", size=" + (data == null ? 0 : data.length) + '}';
+    }
+
+}
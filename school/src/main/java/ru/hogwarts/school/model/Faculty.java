@@ -1,26 +1,36 @@
 package ru.hogwarts.school.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.persistence.Id;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Collection;
 import java.util.Objects;
 
 @Entity
 @Table(name = "Faculty")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Faculty {
 
     /**
      * Для разового вызова ID - @JsonProperty(access = JsonProperty.Access.READ_ONLY)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculty_seq")
+    @SequenceGenerator(name = "faculty_seq", sequenceName = "faculty_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name")
@@ -29,7 +39,22 @@ public class Faculty {
     @Column(name = "color")
     private String color;
 
+    /**
+     * Версия строки: растет при каждом обновлении и отдается клиенту как ETag. <br/>
+     * Если версия в теле PUT устарела, обновление отклоняется (оптимистическая блокировка)
+     */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    /**
+     * В JSON не попадает: студенты факультета отдаются постранично (GET /faculty/{id}?expand=students). <br/>
+     * Если коллекции все же инициализируются в цикле, они подгружаются пачками по 50 факультетов одним запросом
+     */
+    @JsonIgnore
     @OneToMany(mappedBy = "faculty")
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Collection<Student> students;
 
     public Faculty() {
@@ -63,6 +88,14 @@ public class Faculty {
         this.color = color;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Collection<Student> getStudents() {
         return students;
     }
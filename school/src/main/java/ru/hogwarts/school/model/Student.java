@@ -2,26 +2,35 @@ package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Objects;
 
 @Entity
-@Table(name = "Student")
+@Table(name = "Student", indexes = @Index(name = "student_name_unique_index", columnList = "name", unique = true))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Student {
 
     /**
      * Для разового вызова ID - @JsonProperty(access = JsonProperty.Access.READ_ONLY)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name")
@@ -30,6 +39,14 @@ public class Student {
     @Column(name = "age")
     private int age;
 
+    /**
+     * Версия строки: растет при каждом обновлении и отдается клиенту как ETag. <br/>
+     * Если версия в теле PUT устарела, обновление отклоняется (оптимистическая блокировка)
+     */
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "faculty_id")
@@ -68,6 +85,14 @@ public class Student {
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Faculty getFaculty() {
         return faculty;
     }
@@ -0,0 +1,66 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Единственная строка с числом студентов и суммой их возрастов. <br/>
+ * Обновляется в той же транзакции, что и запись студентов (StudentAggregateListener), и периодически сверяется <br/>
+ * с таблицей student (StudentAggregateService) - количество и средний возраст читаются по первичному ключу
+ */
+@Entity
+@Table(name = "student_aggregate")
+public class StudentAggregate {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(name = "student_count", nullable = false)
+    private long studentCount;
+
+    @Column(name = "age_sum", nullable = false)
+    private long ageSum;
+
+    public StudentAggregate() {
+    }
+
+    public StudentAggregate(Integer id, long studentCount, long ageSum) {
+        this.id = id;
+        this.studentCount = studentCount;
+        this.ageSum = ageSum;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public long getStudentCount() {
+        return studentCount;
+    }
+
+    public void setStudentCount(long studentCount) {
+        this.studentCount = studentCount;
+    }
+
+    public long getAgeSum() {
+        return ageSum;
+    }
+
+    public void setAgeSum(long ageSum) {
+        this.ageSum = ageSum;
+    }
+
+    @Override
+    public String toString() {
+        return "StudentAggregate{" + "studentCount=" + studentCount + ", ageSum=" + ageSum + '}';
+    }
+
+}
@@ -0,0 +1,58 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.model.AvatarContent;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AvatarContentRepository extends JpaRepository<AvatarContent, String> {
+
+    /**
+     * Новое содержимое со счетчиком 1 или +1 к счетчику существующего - одним оператором, без гонки между поиском и вставкой. <br/>
+     * Строка остается заблокированной до конца транзакции
+     */
+    @Modifying
+    @Query("INSERT INTO AvatarContent c (hash, filePath, fileSize, referenceCount) VALUES (:hash, :filePath, :fileSize, 1) " +
+            "ON CONFLICT (hash) DO UPDATE SET referenceCount = c.referenceCount + 1")
+    int acquire(String hash, String filePath, long fileSize);
+
+    /**
+     * Строка без ссылок для файла, который остался после отката транзакции, - его удалит очистка. <br/>
+     * Если строка уже есть, файл принадлежит ей и не трогается
+     */
+    @Modifying
+    @Query("INSERT INTO AvatarContent c (hash, filePath, fileSize, referenceCount) VALUES (:hash, :filePath, :fileSize, 0) " +
+            "ON CONFLICT (hash) DO NOTHING")
+    int insertUnreferenced(String hash, String filePath, long fileSize);
+
+    @Modifying
+    @Query("UPDATE AvatarContent c SET c.referenceCount = c.referenceCount - 1 WHERE c.hash = :hash")
+    int decrementReferenceCount(String hash);
+
+    /**
+     * Содержимое без ссылок под блокировкой строк; строки, занятые загрузкой, пропускаются (SKIP LOCKED)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM AvatarContent c WHERE c.referenceCount <= 0 ORDER BY c.hash")
+    List<AvatarContent> findUnreferencedForUpdate(Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM AvatarContent c WHERE c.hash = :hash AND c.referenceCount <= 0")
+    int deleteUnreferenced(String hash);
+
+    @Query("SELECT c.hash FROM AvatarContent c WHERE c.hash IN :hashes")
+    List<String> findExistingHashes(Collection<String> hashes);
+
+    @Query("SELECT c.filePath FROM AvatarContent c WHERE c.filePath IN :filePaths")
+    List<String> findExistingFilePaths(Collection<String> filePaths);
+
+}
@@ -0,0 +1,19 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.AvatarData;
+
+public interface AvatarDataRepository extends JpaRepository<AvatarData, String> {
+
+    /**
+     * Удаляет копию содержимого, если на него больше не ссылается ни один аватар. <br/>
+     * Вызывается до AvatarContentRepository.deleteUnreferenced - avatar_data ссылается на avatar_content
+     */
+    @Modifying
+    @Query("DELETE FROM AvatarData d WHERE d.hash = :hash AND EXISTS " +
+            "(SELECT c FROM AvatarContent c WHERE c.hash = :hash AND c.referenceCount <= 0)")
+    int deleteUnreferenced(String hash);
+
+}
@@ -1,10 +1,14 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.dto.AvatarView;
 import ru.hogwarts.school.model.Avatar;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
@@ -13,4 +17,15 @@ public interface AvatarRepository extends JpaRepository<Avatar, Long> {
 
     Page<Avatar> findByStudentId(Long studentId, Pageable pageable);
 
+    /**
+     * Списки аватаров выбираются сразу в AvatarView: student_id берется из внешнего ключа, без JOIN и загрузки студента
+     */
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarView(a.id, a.filePath, a.fileSize, a.mediaType, a.student.id) "
+            + "FROM Avatar a ORDER BY a.id")
+    List<AvatarView> findViews(Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarView(a.id, a.filePath, a.fileSize, a.mediaType, a.student.id) "
+            + "FROM Avatar a WHERE a.id > :id ORDER BY a.id")
+    List<AvatarView> findViewsByIdGreaterThan(Long id, Limit limit);
+
 }
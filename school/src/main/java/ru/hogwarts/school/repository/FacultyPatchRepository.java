@@ -0,0 +1,12 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.dto.FacultyPatch;
+
+public interface FacultyPatchRepository {
+
+    /**
+     * Один UPDATE faculty без предварительного SELECT, см. StudentPatchRepository
+     */
+    int patch(Long id, FacultyPatch patch, Long version);
+
+}
@@ -0,0 +1,36 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.model.Faculty;
+
+class FacultyPatchRepositoryImpl implements FacultyPatchRepository {
+
+    private final EntityManager entityManager;
+
+    FacultyPatchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int patch(Long id, FacultyPatch patch, Long version) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Faculty> update = builder.createCriteriaUpdate(Faculty.class);
+        Root<Faculty> faculty = update.from(Faculty.class);
+        if (patch.has(FacultyPatch.NAME)) {
+            update.set(faculty.<String>get("name"), patch.name());
+        }
+        if (patch.has(FacultyPatch.COLOR)) {
+            update.set(faculty.<String>get("color"), patch.color());
+        }
+        update.set(faculty.<Long>get("version"), builder.sum(faculty.get("version"), 1L));
+        update.where(version == null
+                ? builder.equal(faculty.get("id"), id)
+                : builder.and(builder.equal(faculty.get("id"), id), builder.equal(faculty.get("version"), version)));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+}
@@ -1,12 +1,48 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.dto.FacultyView;
 import ru.hogwarts.school.model.Faculty;
 
-import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
-    Collection<Faculty> findByNameOrColorIgnoreCase(String name, String color);
+public interface FacultyRepository extends JpaRepository<Faculty, Long>, FacultyPatchRepository {
+
+    /**
+     * Поиск выбирает FacultyView конструктором в JPQL, см. StudentRepository
+     */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new ru.hogwarts.school.dto.FacultyView(f.id, f.name, f.color) FROM Faculty f "
+            + "WHERE upper(f.name) = upper(:name) OR upper(f.color) = upper(:color) ORDER BY f.id")
+    List<FacultyView> findViewsByNameOrColorIgnoreCase(String name, String color);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new ru.hogwarts.school.dto.FacultyView(f.id, f.name, f.color) FROM Faculty f WHERE f.color = :color ORDER BY f.id")
+    List<FacultyView> findViewsByColor(String color);
+
+    /**
+     * Только версия строки для проверки ETag, см. StudentRepository
+     */
+    @Query("SELECT f.version FROM Faculty f WHERE f.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query(value = "SELECT name from faculty WHERE name IS NOT NULL ORDER BY length(name) DESC, id LIMIT 1", nativeQuery = true)
+    String getLongestFacultyName();
+
+    /**
+     * Курсор по всем факультетам для выгрузки, см. StudentRepository.streamAll()
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("SELECT f FROM Faculty f ORDER BY f.id")
+    Stream<Faculty> streamAll();
 
 }
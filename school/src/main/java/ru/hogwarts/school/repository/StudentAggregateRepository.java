@@ -0,0 +1,26 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.StudentAggregate;
+
+import java.util.Optional;
+
+public interface StudentAggregateRepository extends JpaRepository<StudentAggregate, Integer> {
+
+    /**
+     * Строка агрегата с блокировкой до конца транзакции: пока идет сверка, приращения из других транзакций ждут
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM StudentAggregate a WHERE a.id = :id")
+    Optional<StudentAggregate> findForUpdate(Integer id);
+
+    @Query("SELECT count(s) FROM Student s")
+    long countStudents();
+
+    @Query("SELECT coalesce(sum(s.age), 0) FROM Student s")
+    long sumStudentAges();
+
+}
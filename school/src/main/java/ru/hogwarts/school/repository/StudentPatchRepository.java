@@ -0,0 +1,14 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.dto.StudentPatch;
+
+public interface StudentPatchRepository {
+
+    /**
+     * Один UPDATE student без предварительного SELECT: только колонки из патча и version + 1. <br/>
+     * version, если передана, проверяется в том же WHERE. Результат - число измененных строк: 0 - студента нет или версия другая. <br/>
+     * Как любой массовый UPDATE, сбрасывает регионы кэша второго уровня над таблицей student и метки кэша запросов
+     */
+    int patch(Long id, StudentPatch patch, Long version);
+
+}
@@ -0,0 +1,45 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+/**
+ * Набор колонок в SET зависит от патча, поэтому запрос строится через CriteriaUpdate, а не @Query. <br/>
+ * Факультет задается ссылкой getReference - она не читает факультет, в UPDATE попадает только faculty_id
+ */
+class StudentPatchRepositoryImpl implements StudentPatchRepository {
+
+    private final EntityManager entityManager;
+
+    StudentPatchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public int patch(Long id, StudentPatch patch, Long version) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Student> update = builder.createCriteriaUpdate(Student.class);
+        Root<Student> student = update.from(Student.class);
+        if (patch.has(StudentPatch.NAME)) {
+            update.set(student.<String>get("name"), patch.name());
+        }
+        if (patch.has(StudentPatch.AGE)) {
+            update.set(student.<Integer>get("age"), patch.age());
+        }
+        if (patch.has(StudentPatch.FACULTY_ID)) {
+            update.set(student.<Faculty>get("faculty"),
+                    patch.facultyId() == null ? null : entityManager.getReference(Faculty.class, patch.facultyId()));
+        }
+        update.set(student.<Long>get("version"), builder.sum(student.get("version"), 1L));
+        update.where(version == null
+                ? builder.equal(student.get("id"), id)
+                : builder.and(builder.equal(student.get("id"), id), builder.equal(student.get("version"), version)));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+}
@@ -1,22 +1,86 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentRow;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentAggregate;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
-    Collection<Student> findByAgeBetween(int minAge, int maxAge);
+public interface StudentRepository extends JpaRepository<Student, Long>, StudentPatchRepository {
 
-    @Query(value = "SELECT count(*) as student from student", nativeQuery = true)
+    /**
+     * Списки и поиск выбирают StudentView конструктором в JPQL: только нужные колонки, без управляемых сущностей
+     */
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new ru.hogwarts.school.dto.StudentView(s.id, s.name, s.age) FROM Student s WHERE s.age = :age ORDER BY s.id")
+    List<StudentView> findViewsByAge(int age);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new ru.hogwarts.school.dto.StudentView(s.id, s.name, s.age) FROM Student s "
+            + "WHERE s.age BETWEEN :minAge AND :maxAge ORDER BY s.id")
+    List<StudentView> findViewsByAgeBetween(int minAge, int maxAge);
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentView(s.id, s.name, s.age) FROM Student s WHERE s.id > :id ORDER BY s.id")
+    List<StudentView> findViewsByIdGreaterThan(Long id, Limit limit);
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentView(s.id, s.name, s.age) FROM Student s ORDER BY s.id DESC")
+    List<StudentView> findLastViews(Limit limit);
+
+    @Query(value = "SELECT new ru.hogwarts.school.dto.StudentView(s.id, s.name, s.age) FROM Student s WHERE s.faculty.id = :facultyId",
+            countQuery = "SELECT count(s) FROM Student s WHERE s.faculty.id = :facultyId")
+    Page<StudentView> findViewsByFacultyId(Long facultyId, Pageable pageable);
+
+    List<Student> findByNameIn(Collection<String> names);
+
+    /**
+     * Только версия строки для проверки ETag: условный GET отвечает 304, не загружая и не сериализуя студента
+     */
+    @Query("SELECT s.version FROM Student s WHERE s.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    /**
+     * Все студенты колонками для снимка StudentColumns, по возрастанию id
+     */
+    @Query("SELECT new ru.hogwarts.school.dto.StudentRow(s.id, s.name, s.age, s.faculty.id) FROM Student s ORDER BY s.id")
+    List<StudentRow> findRows();
+
+    @Query("SELECT new ru.hogwarts.school.dto.AgeCount(s.age, count(s)) FROM Student s "
+            + "WHERE :facultyId IS NULL OR s.faculty.id = :facultyId GROUP BY s.age ORDER BY s.age")
+    List<AgeCount> getAgeCounts(Long facultyId);
+
+    /**
+     * Курсор по всем студентам для выгрузки: строки читаются из JDBC порциями по fetch size, а не списком целиком. <br/>
+     * Кэш второго уровня не читается и не заполняется (CacheMode.IGNORE): выгрузка не вытесняет из него рабочие записи. <br/>
+     * Вызывать только внутри транзакции и закрывать поток
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("SELECT s FROM Student s LEFT JOIN FETCH s.faculty ORDER BY s.id")
+    Stream<Student> streamAll();
+
+    /**
+     * Количество и средний возраст читаются из строки StudentAggregate по первичному ключу, без прохода по student
+     */
+    @Query("SELECT CAST(a.studentCount AS Integer) FROM StudentAggregate a WHERE a.id = " + StudentAggregate.ID)
     Integer getCountAllStudents();
 
-    @Query(value = "SELECT AVG(age) as age from student", nativeQuery = true)
+    @Query("SELECT CASE WHEN a.studentCount = 0 THEN NULL ELSE CAST(a.ageSum AS Double) / a.studentCount END "
+            + "FROM StudentAggregate a WHERE a.id = " + StudentAggregate.ID)
     Double getAverageAgeStudents();
 
-    @Query(value = "SELECT * from student ORDER BY id DESC LIMIT 5", nativeQuery = true)
-    Collection<Student> getLastFiveStudents();
-
 }
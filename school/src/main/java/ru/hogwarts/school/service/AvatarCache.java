@@ -0,0 +1,235 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш содержимого аватаров по id студента вне heap (direct ByteBuffer), ограниченный суммарным размером в байтах. <br/>
+ * Вытеснение LRU с допуском по частоте (TinyLFU): новая запись вытесняет старую, только если ее чаще запрашивали. <br/>
+ * Частоты считаются приблизительно в count-min sketch и периодически уменьшаются вдвое, чтобы старая популярность забывалась
+ */
+@Component
+public class AvatarCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarCache.class);
+
+    /**
+     * Средний размер аватара для оценки числа записей - по нему выбирается ширина sketch
+     */
+    private static final int AVERAGE_ENTRY_SIZE = 8 * 1024;
+
+    /**
+     * Сколько последних инвалидаций помнится по id студента; более старые учитываются одной общей отметкой
+     */
+    private static final int TRACKED_INVALIDATIONS = 1024;
+
+    /**
+     * Содержимое аватара. data - буфер только для чтения, каждый вызов get возвращает свою копию позиции
+     */
+    public record Entry(String hash, String mediaType, ByteBuffer data) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, long rejections, int size, long weightBytes, long maxBytes) {
+    }
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * Поколение последней инвалидации по id студента, в порядке инвалидаций
+     */
+    private final LinkedHashMap<Long, Long> invalidations = new LinkedHashMap<>();
+    private long forgottenInvalidation;
+    private long weightBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public AvatarCache(@Value("${avatars.cache.max-bytes:64MB}") DataSize maxBytes) {
+        this.maxBytes = maxBytes.toBytes();
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(256, this.maxBytes / AVERAGE_ENTRY_SIZE)));
+    }
+
+    public Entry get(long studentId) {
+        lock.lock();
+        try {
+            sketch.increment(studentId);
+            Entry entry = entries.get(studentId);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return new Entry(entry.hash(), entry.mediaType(), entry.data().duplicate());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Поколение кэша до чтения из базы: запись, прочитанная до invalidate этого студента, в кэш уже не попадет. <br/>
+     * Инвалидации других студентов на нее не влияют
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(long studentId, String hash, String mediaType, byte[] data, long loadedGeneration) {
+        if (data.length > maxBytes) {
+            rejections.increment();
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length).put(data).flip().asReadOnlyBuffer();
+        lock.lock();
+        try {
+            if (lastInvalidation(studentId) > loadedGeneration) {
+                return;
+            }
+            Entry previous = entries.get(studentId);
+            long previousWeight = previous == null ? 0 : previous.data().capacity();
+            if (!makeRoom(studentId, data.length - previousWeight)) {
+                rejections.increment();
+                return;
+            }
+            entries.put(studentId, new Entry(hash, mediaType, buffer));
+            weightBytes += data.length - previousWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(long studentId) {
+        lock.lock();
+        try {
+            invalidations.remove(studentId);
+            invalidations.put(studentId, generation.incrementAndGet());
+            if (invalidations.size() > TRACKED_INVALIDATIONS) {
+                Iterator<Map.Entry<Long, Long>> eldest = invalidations.entrySet().iterator();
+                forgottenInvalidation = eldest.next().getValue();
+                eldest.remove();
+            }
+            Entry removed = entries.remove(studentId);
+            if (removed != null) {
+                weightBytes -= removed.data().capacity();
+                logger.debug("Cached avatar of student with ID {} invalidated", studentId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), entries.size(), weightBytes, maxBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Поколение последней инвалидации студента; для давно забытых - общая отметка, не меньше настоящей
+     */
+    private long lastInvalidation(long studentId) {
+        Long invalidation = invalidations.get(studentId);
+        return invalidation == null ? forgottenInvalidation : invalidation;
+    }
+
+    /**
+     * Вытесняет самые давние записи, пока новая не поместится (weight - прирост веса с учетом заменяемой записи). <br/>
+     * Если вытесняемая запись популярнее новой, новая не допускается, а прежняя запись этого студента остается; <br/>
+     * уже вытесненное не возвращается - такие записи и так были бы следующими жертвами
+     */
+    private boolean makeRoom(long candidate, long weight) {
+        int candidateFrequency = sketch.frequency(candidate);
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (weightBytes + weight > maxBytes && iterator.hasNext()) {
+            Map.Entry<Long, Entry> victim = iterator.next();
+            if (victim.getKey() == candidate) {
+                continue;
+            }
+            if (sketch.frequency(victim.getKey()) > candidateFrequency) {
+                return false;
+            }
+            iterator.remove();
+            weightBytes -= victim.getValue().data().capacity();
+            evictions.increment();
+        }
+        return weightBytes + weight <= maxBytes;
+    }
+
+    /**
+     * Count-min sketch из четырех строк счетчиков (до 15, как 4-битные счетчики TinyLFU). <br/>
+     * После 10 * width увеличений все счетчики делятся пополам
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+        private static final int MAX_COUNT = 15;
+
+        private final int[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+            this.table = new int[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        int frequency(long key) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, table[row][index(key, row)]);
+            }
+            return frequency;
+        }
+
+        void increment(long key) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(key, row);
+                if (table[row][index] < MAX_COUNT) {
+                    table[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private void reset() {
+            for (int[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private int index(long key, int row) {
+            long hash = (key + SEEDS[row]) * SEEDS[row];
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+    }
+
+}
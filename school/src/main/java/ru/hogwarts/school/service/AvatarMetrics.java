@@ -0,0 +1,62 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.stereotype.Component;
+
+/**
+ * Счетчики байт аватаров: school.avatar.bytes с тегами direction (upload, download) и source (request, db, file, rendition). <br/>
+ * Статистика AvatarCache публикуется как school.avatar.cache.* - значения читаются из AvatarCache.stats() при снятии метрик
+ */
+@Component
+public class AvatarMetrics {
+
+    private static final String BYTES = "school.avatar.bytes";
+    private static final String CACHE = "school.avatar.cache";
+
+    private final Counter uploaded;
+    private final Counter downloadedFromDb;
+    private final Counter downloadedFromFile;
+    private final Counter downloadedRendition;
+
+    public AvatarMetrics(MeterRegistry registry, AvatarCache avatarCache) {
+        this.uploaded = bytesCounter(registry, "upload", "request");
+        this.downloadedFromDb = bytesCounter(registry, "download", "db");
+        this.downloadedFromFile = bytesCounter(registry, "download", "file");
+        this.downloadedRendition = bytesCounter(registry, "download", "rendition");
+
+        FunctionCounter.builder(CACHE + ".requests", avatarCache, cache -> cache.stats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder(CACHE + ".requests", avatarCache, cache -> cache.stats().misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder(CACHE + ".evictions", avatarCache, cache -> cache.stats().evictions()).register(registry);
+        FunctionCounter.builder(CACHE + ".rejections", avatarCache, cache -> cache.stats().rejections()).register(registry);
+        Gauge.builder(CACHE + ".entries", avatarCache, cache -> cache.stats().size()).register(registry);
+        Gauge.builder(CACHE + ".weight", avatarCache, cache -> cache.stats().weightBytes())
+                .baseUnit(BaseUnits.BYTES).register(registry);
+    }
+
+    public void recordUpload(long bytes) {
+        uploaded.increment(bytes);
+    }
+
+    public void recordDownloadFromDb(long bytes) {
+        downloadedFromDb.increment(bytes);
+    }
+
+    public void recordDownloadFromFile(long bytes, boolean rendition) {
+        (rendition ? downloadedRendition : downloadedFromFile).increment(bytes);
+    }
+
+    private static Counter bytesCounter(MeterRegistry registry, String direction, String source) {
+        return Counter.builder(BYTES)
+                .baseUnit(BaseUnits.BYTES)
+                .tag("direction", direction)
+                .tag("source", source)
+                .register(registry);
+    }
+
+}
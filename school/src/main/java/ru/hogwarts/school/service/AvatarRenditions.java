@@ -0,0 +1,180 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Уменьшенные копии аватаров (PNG, вписаны в квадрат sizes x sizes) рядом с оригиналом: avatarsDir/ab/cd/abcd...-48.png. <br/>
+ * Копии создаются в фоне после загрузки, а для аватаров, загруженных раньше, - при первом запросе. <br/>
+ * Размер изображения читается из заголовка до декодирования: маленький файл с огромным разрешением не декодируется вовсе. <br/>
+ * Содержимое, которое не удалось прочитать как изображение, запоминается и не читается повторно на каждый запрос
+ */
+@Component
+public class AvatarRenditions {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarRenditions.class);
+
+    private static final String FORMAT = "png";
+
+    private static final int UNREADABLE_CACHE_SIZE = 1024;
+
+    private final AvatarStorage avatarStorage;
+    private final TaskExecutor executor;
+    private final List<Integer> sizes;
+    private final long maxPixels;
+    private final Set<String> unreadable = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > UNREADABLE_CACHE_SIZE;
+                }
+            }));
+
+    public AvatarRenditions(AvatarStorage avatarStorage,
+                            @Qualifier("avatarRenditionExecutor") TaskExecutor executor,
+                            @Value("${avatars.renditions.sizes:48,96,256}") List<Integer> sizes,
+                            @Value("${avatars.renditions.max-pixels:16000000}") long maxPixels) {
+        this.avatarStorage = avatarStorage;
+        this.executor = executor;
+        this.sizes = List.copyOf(sizes);
+        this.maxPixels = maxPixels;
+    }
+
+    public boolean isSupported(int size) {
+        return sizes.contains(size);
+    }
+
+    public String getMediaType() {
+        return "image/" + FORMAT;
+    }
+
+    public void generateAsync(String hash, Path original) {
+        executor.execute(() -> {
+            try {
+                generate(hash, original, sizes);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to generate renditions for content {}", hash, e);
+            }
+        });
+    }
+
+    /**
+     * Готовая копия или пустой результат, если оригинал не удается прочитать как изображение
+     */
+    public Optional<Path> getOrCreate(String hash, Path original, int size) throws IOException {
+        Path rendition = avatarStorage.renditionPath(hash, size);
+        if (Files.exists(rendition)) {
+            return Optional.of(rendition);
+        }
+        if (unreadable.contains(hash)) {
+            return Optional.empty();
+        }
+        logger.debug("Rendition {} of content {} is missing, generating", size, hash);
+        return generate(hash, original, List.of(size)) ? Optional.of(rendition) : Optional.empty();
+    }
+
+    public void delete(String hash) {
+        unreadable.remove(hash);
+        for (int size : sizes) {
+            avatarStorage.delete(avatarStorage.renditionPath(hash, size));
+        }
+    }
+
+    /**
+     * Оригинал декодируется один раз на все запрошенные размеры; каждая копия пишется во временный файл и переносится атомарно
+     */
+    private boolean generate(String hash, Path original, List<Integer> targetSizes) throws IOException {
+        BufferedImage source = decode(hash, original);
+        if (source == null) {
+            unreadable.add(hash);
+            return false;
+        }
+        for (int size : targetSizes) {
+            Path rendition = avatarStorage.renditionPath(hash, size);
+            if (Files.exists(rendition)) {
+                continue;
+            }
+            Files.createDirectories(rendition.getParent());
+            Path tempFile = Files.createTempFile(rendition.getParent(), hash + "-" + size + "-", ".tmp");
+            try {
+                ImageIO.write(scale(source, size), FORMAT, tempFile.toFile());
+                Files.move(tempFile, rendition, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                logger.debug("Rendition {} of content {} stored at {}", size, hash, rendition);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Декодирует первое изображение файла, если его формат известен и в нем не больше maxPixels точек; иначе null
+     */
+    private BufferedImage decode(String hash, Path original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                logger.debug("Content {} is not a readable image, renditions are not generated", hash);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.debug("Content {} has {} pixels, more than {}, renditions are not generated", hash, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } catch (IIOException e) {
+                logger.debug("Content {} is not a readable image, renditions are not generated", hash, e);
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Вписывает изображение в квадрат size x size с сохранением пропорций; меньшие изображения не увеличиваются
+     */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+}
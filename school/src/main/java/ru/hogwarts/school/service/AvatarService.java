@@ -1,95 +1,308 @@
 package ru.hogwarts.school.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AvatarView;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.model.AvatarData;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.repository.AvatarDataRepository;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class AvatarService {
 
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
-    @Value("${avatars.dir.path}")
-    private String avatarsDir;
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private static final int ORPHAN_BATCH_SIZE = 500;
 
     private final StudentRepository studentRepository;
     private final AvatarRepository avatarRepository;
+    private final AvatarContentRepository avatarContentRepository;
+    private final AvatarDataRepository avatarDataRepository;
+    private final AvatarStorage avatarStorage;
+    private final AvatarRenditions avatarRenditions;
+    private final AvatarCache avatarCache;
+    private final TransactionTemplate requiresNew;
+    private final Duration orphanGracePeriod;
 
-    public AvatarService(StudentRepository studentRepository, AvatarRepository avatarRepository) {
+    public AvatarService(StudentRepository studentRepository, AvatarRepository avatarRepository,
+                         AvatarContentRepository avatarContentRepository, AvatarDataRepository avatarDataRepository,
+                         AvatarStorage avatarStorage, AvatarRenditions avatarRenditions, AvatarCache avatarCache,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${avatars.orphan-grace-period:1h}") Duration orphanGracePeriod) {
         this.studentRepository = studentRepository;
         this.avatarRepository = avatarRepository;
+        this.avatarContentRepository = avatarContentRepository;
+        this.avatarDataRepository = avatarDataRepository;
+        this.avatarStorage = avatarStorage;
+        this.avatarRenditions = avatarRenditions;
+        this.avatarCache = avatarCache;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.orphanGracePeriod = orphanGracePeriod;
     }
 
+    /**
+     * Файл сохраняется по SHA-256 содержимого (AvatarStorage): одинаковые загрузки хранятся один раз. <br/>
+     * Счетчик ссылок меняется одним INSERT ... ON CONFLICT, а файл без ссылок удаляет sweepUnreferencedContent. <br/>
+     * Копия в базе (AvatarData) тоже одна на содержимое и пишется только для нового хэша. <br/>
+     * Загрузка копируется во временный файл за один проход вместе с подсчетом хэша (AvatarStorage.stage). <br/>
+     * Уменьшенные копии нового содержимого создаются в фоне после фиксации транзакции (AvatarRenditions), <br/>
+     * тогда же аватар студента удаляется из AvatarCache
+     */
+    @Transactional
     public void uploadAvatar(Long studentId, MultipartFile file) throws IOException {
         logger.info("Was invoked method for upload avatar");
 
         Student student = studentRepository.getById(studentId);
 
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(file.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-            logger.debug("The file will be saved at path: {}, extension: {}", filePath, getExtension(file.getOriginalFilename()));
-
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024);
-        ) {
-            bis.transferTo(bos);
-            logger.debug("File saved successfully. Path: {}, size: {} bytes", filePath, file.getSize());
+        AvatarStorage.StagedFile staged = avatarStorage.stage(file.getInputStream(), file.getSize());
+        try {
+            Avatar avatar = findAvatar(studentId);
+            if (avatar.getId() == null) {
+                logger.debug("Creating a new avatar entry for a student with ID: {}", studentId);
+            }
+            AvatarContent previous = avatar.getContent();
+            boolean replaced = previous != null && !previous.getHash().equals(staged.hash());
+            // строки AvatarContent блокируются в порядке хэшей: встречные замены A -> B и B -> A не ждут друг друга
+            boolean releaseFirst = replaced && previous.getHash().compareTo(staged.hash()) < 0;
+            if (releaseFirst) {
+                releaseContent(previous);
+            }
+            AvatarContent content = previous != null && !replaced ? previous : acquireContent(staged);
+            if (replaced && !releaseFirst) {
+                releaseContent(previous);
+            }
+
+            avatar.setStudent(student);
+            avatar.setContent(content);
+            avatar.setFilePath(content.getFilePath());
+            avatar.setFileSize(staged.size());
+            avatar.setMediaType(file.getContentType());
+
+            avatarRepository.save(avatar);
+            logger.debug("Avatar entry for a student with ID {} points to content {}", studentId, content.getHash());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    avatarCache.invalidate(studentId);
+                }
+            });
+        } finally {
+            avatarStorage.discard(staged);
         }
-        /**
-         * альтернативный вариант для строк 42-48 (вместо блока try-with-resources)
-         * Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-         */
+    }
 
-        Avatar avatar = findAvatar(studentId);
-        if (avatar == null) {
-            logger.debug("Creating a new avatar entry for a student with ID: {}", studentId);
-            avatar = new Avatar();
+    /**
+     * Файл переносится на место под блокировкой строки, поэтому его нет только у нового содержимого <br/>
+     * или у содержимого, которое очистка успела удалить с диска, но не из базы. <br/>
+     * Файл, перенесенный в откаченной транзакции, записывается строкой без ссылок - его удалит очистка
+     */
+    private AvatarContent acquireContent(AvatarStorage.StagedFile staged) throws IOException {
+        String hash = staged.hash();
+        avatarContentRepository.acquire(hash, avatarStorage.contentPath(hash).toString(), staged.size());
+        AvatarContent content = avatarContentRepository.findById(hash).orElseThrow();
+        logger.debug("Content {} acquired, reference count: {}", hash, content.getReferenceCount());
+        if (!avatarDataRepository.existsById(hash)) {
+            avatarDataRepository.save(new AvatarData(hash, staged.readData()));
+        }
+        Path filePath = Path.of(content.getFilePath());
+        if (avatarStorage.publish(staged, filePath)) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        avatarRenditions.generateAsync(hash, filePath);
+                    } else {
+                        logger.debug("Upload of content {} rolled back, file {} is left to the sweep", hash, filePath);
+                        requiresNew.executeWithoutResult(tx ->
+                                avatarContentRepository.insertUnreferenced(hash, filePath.toString(), staged.size()));
+                    }
+                }
+            });
         }
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(file.getBytes());
+        return content;
+    }
 
-        avatarRepository.save(avatar);
-        logger.debug("Updating an existing avatar entry for a student with ID: {}", studentId);
+    private void releaseContent(AvatarContent content) {
+        avatarContentRepository.decrementReferenceCount(content.getHash());
+        logger.debug("Content {} released", content.getHash());
+    }
+
+    /**
+     * Удаляет содержимое без ссылок: строку, копию в базе, файл и уменьшенные копии. <br/>
+     * Строки блокируются, поэтому загрузка того же содержимого ждет конца очистки и заново переносит файл; <br/>
+     * строки, занятые загрузкой, пропускаются до следующего запуска
+     */
+    @Scheduled(fixedDelayString = "${avatars.sweep-interval:10m}", initialDelayString = "${avatars.sweep-interval:10m}")
+    @Transactional
+    public int sweepUnreferencedContent() {
+        logger.info("Was invoked method for sweep unreferenced avatar content");
+        List<AvatarContent> unreferenced = avatarContentRepository.findUnreferencedForUpdate(Limit.of(SWEEP_BATCH_SIZE));
+        for (AvatarContent content : unreferenced) {
+            String hash = content.getHash();
+            avatarDataRepository.deleteUnreferenced(hash);
+            avatarContentRepository.deleteUnreferenced(hash);
+            avatarStorage.delete(Path.of(content.getFilePath()));
+            avatarRenditions.delete(hash);
+        }
+        logger.debug("Unreferenced avatar content deleted: {}", unreferenced.size());
+        return unreferenced.size();
+    }
+
+    /**
+     * Удаляет файлы хранилища, которых нет в AvatarContent: копии, оставшиеся после объединения одинаковых аватаров <br/>
+     * при переходе на хранение по содержимому, временные файлы оборванных загрузок и уменьшенные копии удаленного содержимого. <br/>
+     * Файл нужен, если в AvatarContent есть строка с его хэшем (для файлов, названных по хэшу) или с его путем. <br/>
+     * Файлы моложе avatars.orphan-grace-period не трогаются: строка загрузки, которая их переносит, еще не зафиксирована
+     */
+    @Scheduled(fixedDelayString = "${avatars.sweep-interval:10m}", initialDelayString = "${avatars.sweep-interval:10m}")
+    public int sweepOrphanFiles() throws IOException {
+        logger.info("Was invoked method for sweep orphan avatar files");
+        List<Path> candidates = avatarStorage.listFilesModifiedBefore(Instant.now().minus(orphanGracePeriod));
+        int deleted = 0;
+        for (int from = 0; from < candidates.size(); from += ORPHAN_BATCH_SIZE) {
+            deleted += deleteOrphans(candidates.subList(from, Math.min(from + ORPHAN_BATCH_SIZE, candidates.size())));
+        }
+        logger.debug("Orphan avatar files deleted: {}", deleted);
+        return deleted;
+    }
+
+    private int deleteOrphans(List<Path> files) throws IOException {
+        Map<Path, String> hashes = new HashMap<>();
+        List<String> filePaths = new ArrayList<>();
+        for (Path file : files) {
+            avatarStorage.contentHash(file).ifPresentOrElse(
+                    hash -> hashes.put(file, hash),
+                    () -> filePaths.add(file.toString()));
+        }
+        Set<String> knownHashes = hashes.isEmpty()
+                ? Set.of() : new HashSet<>(avatarContentRepository.findExistingHashes(new HashSet<>(hashes.values())));
+        Set<String> knownFilePaths = filePaths.isEmpty()
+                ? Set.of() : new HashSet<>(avatarContentRepository.findExistingFilePaths(filePaths));
+        int deleted = 0;
+        for (Path file : files) {
+            String hash = hashes.get(file);
+            boolean referenced = hash != null
+                    ? knownHashes.contains(hash)
+                    : knownFilePaths.contains(file.toString()) || isStoredFileOf(file);
+            if (!referenced) {
+                avatarStorage.delete(file);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Путь в строке мог быть записан в другой форме (относительный, через ссылку) - сверяется сам файл
+     */
+    private boolean isStoredFileOf(Path file) throws IOException {
+        return avatarContentRepository.findById(avatarStorage.hash(file))
+                .map(content -> avatarStorage.isSameFile(Path.of(content.getFilePath()), file))
+                .orElse(false);
     }
 
     public Avatar findAvatar(long studentId) {
         logger.info("Was invoked method for search avatar by student id");
-        logger.warn("Avatar by student with ID {} not found", studentId);
-        return avatarRepository.findByStudentId(studentId).orElseGet(Avatar::new);
+        return avatarRepository.findByStudentId(studentId).orElseGet(() -> {
+            logger.debug("Avatar by student with ID {} not found", studentId);
+            return new Avatar();
+        });
+    }
+
+    /**
+     * Байты аватара из базы - читаются отдельным запросом только при скачивании
+     */
+    public Optional<byte[]> findAvatarData(Avatar avatar) {
+        logger.info("Was invoked method for get avatar data");
+        if (avatar.getContent() == null) {
+            return Optional.empty();
+        }
+        return avatarDataRepository.findById(avatar.getContent().getHash()).map(AvatarData::getData);
+    }
+
+    /**
+     * Содержимое аватара из базы через AvatarCache: при попадании в кэш запросов к базе нет совсем
+     */
+    public Optional<AvatarCache.Entry> findAvatarContent(long studentId) {
+        logger.info("Was invoked method for get avatar content");
+        AvatarCache.Entry cached = avatarCache.get(studentId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = avatarCache.generation();
+        Avatar avatar = findAvatar(studentId);
+        Optional<byte[]> data = findAvatarData(avatar);
+        if (data.isEmpty()) {
+            return Optional.empty();
+        }
+        String hash = avatar.getContent().getHash();
+        logger.debug("Avatar of student with ID {} loaded from database, size: {} bytes", studentId, data.get().length);
+        avatarCache.put(studentId, hash, avatar.getMediaType(), data.get(), generation);
+        return Optional.of(new AvatarCache.Entry(hash, avatar.getMediaType(), ByteBuffer.wrap(data.get()).asReadOnlyBuffer()));
     }
 
-    private String getExtension(String fileName) {
-        logger.info("Was invoked method for get extension");
-        logger.debug("Get extension file: {}", fileName);
-        return fileName.substring(fileName.lastIndexOf(".") + 1);
+    public AvatarCache.Stats getCacheStats() {
+        logger.info("Was invoked method for get avatar cache stats");
+        return avatarCache.stats();
+    }
+
+    /**
+     * Уменьшенная копия аватара, созданная при необходимости. <br/>
+     * Пустой результат - у аватара нет содержимого или его нельзя прочитать как изображение
+     */
+    public Optional<Path> findAvatarRendition(Avatar avatar, int size) throws IOException {
+        logger.info("Was invoked method for get avatar rendition");
+        if (avatar.getContent() == null) {
+            return Optional.empty();
+        }
+        logger.debug("Request rendition {} of avatar with ID {}", size, avatar.getId());
+        return avatarRenditions.getOrCreate(avatar.getContent().getHash(), Path.of(avatar.getFilePath()), size);
+    }
+
+    public boolean isRenditionSizeSupported(int size) {
+        return avatarRenditions.isSupported(size);
+    }
+
+    public String getRenditionMediaType() {
+        return avatarRenditions.getMediaType();
     }
 
     public Collection<Avatar> getAll() {
@@ -98,11 +311,22 @@ public class AvatarService {
         return avatarRepository.findAll();
     }
 
-    public Collection<Avatar> getAllAvatarsByPage(Integer pageNumber, Integer pageSize) {
+    @Transactional(readOnly = true)
+    public Collection<AvatarView> getAllAvatarsByPage(Integer pageNumber, Integer pageSize) {
         logger.info("Was invoked method for get all avatars by page");
         PageRequest pageRequest = PageRequest.of(pageNumber,pageSize);
         logger.debug("Request for avatars. Page: {}, page size: {}", pageNumber, pageSize);
-        return avatarRepository.findAll(pageRequest).getContent();
+        return avatarRepository.findViews(pageRequest);
+    }
+
+    /**
+     * Keyset-пагинация аватаров по id, в отличие от getAllAvatarsByPage не использует OFFSET
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AvatarView> getAvatarsAfter(long lastId, int limit) {
+        logger.info("Was invoked method for get avatars by cursor");
+        logger.debug("Request avatars after ID {}, limit: {}", lastId, limit);
+        return CursorPage.of(avatarRepository.findViewsByIdGreaterThan(lastId, Limit.of(limit + 1)), limit, AvatarView::id);
     }
 
 }
@@ -0,0 +1,213 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Файловое хранилище аватаров с адресацией по содержимому. <br/>
+ * Файл лежит в avatarsDir/ab/cd/abcd...(SHA-256) - двухуровневое разбиение не дает одному каталогу разрастись до миллионов записей. <br/>
+ * Загрузка сначала пишется во временный файл в avatarsDir/tmp (та же файловая система - перенос атомарный): <br/>
+ * один проход через буфер фиксированного размера и в файл, и в SHA-256, без копии всей загрузки в heap
+ */
+@Component
+public class AvatarStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarStorage.class);
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final Pattern CONTENT_FILE_NAME = Pattern.compile("([0-9a-f]{64})(-\\d+\\.png)?");
+
+    private final Path avatarsDir;
+    private final long maxFileSize;
+
+    public AvatarStorage(@Value("${avatars.dir.path}") String avatarsDir,
+                         @Value("${avatars.max-file-size:89999B}") DataSize maxFileSize) {
+        this.avatarsDir = Path.of(avatarsDir);
+        this.maxFileSize = maxFileSize.toBytes();
+    }
+
+    /**
+     * Временный файл загрузки вместе с SHA-256 и размером
+     */
+    public record StagedFile(Path tempFile, String hash, long size) {
+
+        /**
+         * Содержимое для копии в базе - читается из временного файла, пока он не перенесен
+         */
+        public byte[] readData() throws IOException {
+            return Files.readAllBytes(tempFile);
+        }
+
+    }
+
+    /**
+     * Копирует загрузку во временный файл, по пути считая SHA-256. Загрузка больше avatars.max-file-size отклоняется <br/>
+     * по заявленному размеру до чтения, а без него - как только прочитан лишний байт; временный файл при этом удаляется
+     *
+     * @param expectedSize заявленный размер (Content-Length части) или -1, если он неизвестен
+     */
+    public StagedFile stage(InputStream inputStream, long expectedSize) throws IOException {
+        if (expectedSize > maxFileSize) {
+            throw new AvatarTooLargeException(maxFileSize);
+        }
+        Path tmpDir = avatarsDir.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        Path tempFile = Files.createTempFile(tmpDir, "upload-", ".tmp");
+        MessageDigest digest = newDigest();
+        long size = 0;
+        try (InputStream is = inputStream; OutputStream os = Files.newOutputStream(tempFile)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                size += read;
+                if (size > maxFileSize) {
+                    throw new AvatarTooLargeException(maxFileSize);
+                }
+                digest.update(buffer, 0, read);
+                os.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        logger.debug("Upload staged at {}, size: {} bytes, hash: {}", tempFile, size, hash);
+        return new StagedFile(tempFile, hash, size);
+    }
+
+    public Path contentPath(String hash) {
+        return avatarsDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Уменьшенная копия лежит рядом с оригиналом
+     */
+    public Path renditionPath(String hash, int size) {
+        return contentPath(hash).resolveSibling(hash + "-" + size + ".png");
+    }
+
+    /**
+     * Переносит временный файл в target. Если файл уже есть, временный файл просто удаляется. <br/>
+     * Вызывается под блокировкой строки AvatarContent, поэтому проверка и перенос не пересекаются с другой загрузкой или очисткой
+     *
+     * @return true - файл перенесен, false - он уже был на месте
+     */
+    public boolean publish(StagedFile staged, Path target) throws IOException {
+        if (Files.exists(target)) {
+            logger.debug("Content {} is already stored at {}", staged.hash(), target);
+            // файл снова занят - отсчет срока, после которого очистка считает его потерянным, начинается заново
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            Files.deleteIfExists(staged.tempFile());
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        Files.move(staged.tempFile(), target, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Content {} stored at {}", staged.hash(), target);
+        return true;
+    }
+
+    /**
+     * Все файлы хранилища, включая avatarsDir/tmp, которые не менялись с момента threshold. <br/>
+     * Файлы и каталоги, удаленные во время обхода, пропускаются
+     */
+    public List<Path> listFilesModifiedBefore(Instant threshold) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(avatarsDir)) {
+            return files;
+        }
+        Files.walkFileTree(avatarsDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.lastModifiedTime().toInstant().isBefore(threshold)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.debug("Avatar file {} skipped: {}", file, e.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Хэш содержимого по имени файла: оригинал называется хэшем, уменьшенная копия - хэшем с размером. <br/>
+     * У файлов, записанных до хранения по содержимому, и у временных файлов хэша в имени нет
+     */
+    public Optional<String> contentHash(Path file) {
+        Matcher matcher = CONTENT_FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    public String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream is = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean isSameFile(Path path, Path other) {
+        try {
+            return Files.isSameFile(path, other);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void discard(StagedFile staged) {
+        delete(staged.tempFile());
+    }
+
+    public void delete(Path path) {
+        try {
+            if (Files.deleteIfExists(path)) {
+                logger.debug("Avatar file {} deleted", path);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to delete avatar file {}", path, e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported", e);
+        }
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Загрузка больше avatars.max-file-size - по заявленному размеру или по прочитанным байтам
+ */
+public class AvatarTooLargeException extends RuntimeException {
+
+    private final long maxFileSize;
+
+    public AvatarTooLargeException(long maxFileSize) {
+        super("Avatar is larger than " + maxFileSize + " bytes");
+        this.maxFileSize = maxFileSize;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+}
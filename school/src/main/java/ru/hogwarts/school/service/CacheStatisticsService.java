@@ -0,0 +1,51 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.CacheRegionStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Попадания и промахи кэша второго уровня и кэша запросов по регионам (hibernate.generate_statistics)
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class CacheStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheStatisticsService.class);
+
+    private final Statistics statistics;
+
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public List<CacheRegionStats> getRegionStats() {
+        logger.info("Was invoked method for get second-level cache statistics");
+        List<CacheRegionStats> regions = new ArrayList<>();
+        for (String name : statistics.getSecondLevelCacheRegionNames()) {
+            // Регион результатов запросов появляется в списке после первого кэшируемого запроса - он учтен ниже как query-results
+            if (name.equals(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME)) {
+                continue;
+            }
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(name);
+            regions.add(CacheRegionStats.of(name, region.getHitCount(), region.getMissCount(), region.getPutCount(),
+                    region.getElementCountInMemory()));
+        }
+        regions.add(CacheRegionStats.of("query-results", statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getQueryCachePutCount(), -1));
+        logger.debug("Second-level cache regions: {}", regions);
+        return regions;
+    }
+
+}
@@ -0,0 +1,36 @@
+package ru.hogwarts.school.service;
+
+import java.util.Locale;
+
+/**
+ * Формат выгрузки: NDJSON - один JSON-объект на строку, CSV - с заголовком
+ */
+public enum ExportFormat {
+
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @throws IllegalArgumentException для неизвестного формата
+     */
+    public static ExportFormat of(String format) {
+        return valueOf(format.trim().toUpperCase(Locale.ROOT));
+    }
+
+}
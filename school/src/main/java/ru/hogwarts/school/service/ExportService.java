@@ -0,0 +1,173 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка студентов и факультетов целиком в NDJSON или CSV с постоянным расходом памяти. <br/>
+ * Строки читаются курсором (Stream с JDBC fetch size) внутри транзакции только для чтения, каждая сущность <br/>
+ * записывается в поток ответа и сразу отсоединяется от контекста персистентности
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final String[] STUDENT_COLUMNS = {"id", "name", "age", "facultyId"};
+    private static final String[] FACULTY_COLUMNS = {"id", "name", "color"};
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public ExportService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                         EntityManager entityManager, ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public long exportStudents(ExportFormat format, OutputStream out) throws IOException {
+        logger.info("Was invoked method for export students");
+        long count = 0;
+        try (Stream<Student> students = studentRepository.streamAll();
+             RowWriter writer = createWriter(format, out, STUDENT_COLUMNS)) {
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                Student student = iterator.next();
+                Faculty faculty = student.getFaculty();
+                writer.write(student.getId(), student.getName(), student.getAge(), faculty == null ? null : faculty.getId());
+                entityManager.detach(student);
+                count++;
+            }
+        }
+        logger.debug("Exported {} students as {}", count, format);
+        return count;
+    }
+
+    @Transactional(readOnly = true)
+    public long exportFaculties(ExportFormat format, OutputStream out) throws IOException {
+        logger.info("Was invoked method for export faculties");
+        long count = 0;
+        try (Stream<Faculty> faculties = facultyRepository.streamAll();
+             RowWriter writer = createWriter(format, out, FACULTY_COLUMNS)) {
+            Iterator<Faculty> iterator = faculties.iterator();
+            while (iterator.hasNext()) {
+                Faculty faculty = iterator.next();
+                writer.write(faculty.getId(), faculty.getName(), faculty.getColor());
+                entityManager.detach(faculty);
+                count++;
+            }
+        }
+        logger.debug("Exported {} faculties as {}", count, format);
+        return count;
+    }
+
+    private RowWriter createWriter(ExportFormat format, OutputStream out, String[] columns) throws IOException {
+        return switch (format) {
+            case NDJSON -> new NdjsonWriter(objectMapper, out, columns);
+            case CSV -> new CsvWriter(out, columns);
+        };
+    }
+
+    /**
+     * Запись строк выгрузки. close() дописывает буфер, но не закрывает поток ответа
+     */
+    private interface RowWriter extends Closeable {
+
+        void write(Object... values) throws IOException;
+
+    }
+
+    private static final class NdjsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+        private final String[] columns;
+
+        NdjsonWriter(ObjectMapper objectMapper, OutputStream out, String[] columns) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(Object... values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                generator.writeObject(values[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+
+    }
+
+    private static final class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out, String[] columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            write((Object[]) columns);
+        }
+
+        @Override
+        public void write(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writer.write(escape(values[i].toString()));
+                }
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultyView;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Неизменяемый снимок всех факультетов с индексами по нормализованному цвету и по названию в верхнем регистре. <br/>
+ * Любое изменение создает новый снимок (copy-on-write), поэтому чтение не требует блокировок. <br/>
+ * Хранятся неизменяемые FacultyView - их можно отдавать в ответ как есть
+ */
+final class FacultyCatalog {
+
+    static final FacultyCatalog EMPTY = new FacultyCatalog(new TreeMap<>());
+
+    private final Map<Long, FacultyView> byId;
+    private final Map<String, List<FacultyView>> byColor;
+    private final Map<String, List<FacultyView>> byName;
+    private final String longestName;
+
+    private FacultyCatalog(TreeMap<Long, FacultyView> faculties) {
+        this.byId = Collections.unmodifiableMap(faculties);
+        this.byColor = index(faculties.values(), FacultyView::color);
+        this.byName = index(faculties.values(), FacultyView::name);
+        String longest = "";
+        for (FacultyView faculty : faculties.values()) {
+            if (faculty.name() != null && faculty.name().length() > longest.length()) {
+                longest = faculty.name();
+            }
+        }
+        this.longestName = longest;
+    }
+
+    static FacultyCatalog of(Collection<Faculty> faculties) {
+        TreeMap<Long, FacultyView> byId = new TreeMap<>();
+        for (Faculty faculty : faculties) {
+            byId.put(faculty.getId(), FacultyView.of(faculty));
+        }
+        return new FacultyCatalog(byId);
+    }
+
+    FacultyCatalog with(Faculty faculty) {
+        TreeMap<Long, FacultyView> copy = new TreeMap<>(byId);
+        copy.put(faculty.getId(), FacultyView.of(faculty));
+        return new FacultyCatalog(copy);
+    }
+
+    FacultyCatalog with(Long id, FacultyPatch patch) {
+        FacultyView faculty = byId.get(id);
+        if (faculty == null) {
+            return this;
+        }
+        TreeMap<Long, FacultyView> copy = new TreeMap<>(byId);
+        copy.put(id, patch.applyTo(faculty));
+        return new FacultyCatalog(copy);
+    }
+
+    FacultyCatalog without(Long id) {
+        if (!byId.containsKey(id)) {
+            return this;
+        }
+        TreeMap<Long, FacultyView> copy = new TreeMap<>(byId);
+        copy.remove(id);
+        return new FacultyCatalog(copy);
+    }
+
+    /**
+     * Точное совпадение цвета, как в запросе WHERE color = ? - индекс по нормализованному цвету только сужает перебор
+     */
+    Collection<FacultyView> findByColor(String color) {
+        List<FacultyView> candidates = byColor.getOrDefault(normalize(color), List.of());
+        List<FacultyView> result = new ArrayList<>(candidates.size());
+        for (FacultyView faculty : candidates) {
+            if (Objects.equals(faculty.color(), color)) {
+                result.add(faculty);
+            }
+        }
+        return result;
+    }
+
+    Collection<FacultyView> findByNameOrColorIgnoreCase(String findParameter) {
+        String key = normalize(findParameter);
+        Set<FacultyView> result = new LinkedHashSet<>(byName.getOrDefault(key, List.of()));
+        result.addAll(byColor.getOrDefault(key, List.of()));
+        return new ArrayList<>(result);
+    }
+
+    String getLongestName() {
+        return longestName;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    private static Map<String, List<FacultyView>> index(Collection<FacultyView> faculties, Function<FacultyView, String> attribute) {
+        Map<String, List<FacultyView>> index = new HashMap<>();
+        for (FacultyView faculty : faculties) {
+            String value = attribute.apply(faculty);
+            if (value != null) {
+                index.computeIfAbsent(normalize(value), key -> new ArrayList<>(1)).add(faculty);
+            }
+        }
+        index.replaceAll((key, list) -> List.copyOf(list));
+        return index;
+    }
+
+    /**
+     * Та же нормализация, что upper(...) в запросе DATABASE-режима: без trim, иначе режимы расходятся на значениях с пробелами
+     */
+    private static String normalize(String value) {
+        return value == null ? null : value.toUpperCase(Locale.ROOT);
+    }
+
+}
@@ -1,45 +1,148 @@
 package ru.hogwarts.school.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.FacultyDetails;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultyView;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
 
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class FacultyService {
 
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
 
     private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
 
-    public FacultyService(FacultyRepository facultyRepository) {
+    /**
+     * Переключатель school.faculty.filter-mode: MEMORY (по умолчанию) - чтение из снимка FacultyCatalog без обращения к базе, <br/>
+     * DATABASE - фильтрация запросами к базе, STREAM - исходные стримы по findAll() для сравнения в тестах и бенчмарках
+     */
+    private final FilterMode filterMode;
+
+    /**
+     * Текущий снимок факультетов - подменяется атомарно после каждой зафиксированной записи (см. FacultyCatalogListener)
+     */
+    private final AtomicReference<FacultyCatalog> catalog = new AtomicReference<>(FacultyCatalog.EMPTY);
+
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          @Value("${school.faculty.filter-mode:MEMORY}") FilterMode filterMode) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.filterMode = filterMode;
+    }
+
+    @PostConstruct
+    public void loadCatalog() {
+        if (filterMode == FilterMode.MEMORY) {
+            FacultyCatalog loaded = FacultyCatalog.of(facultyRepository.findAll());
+            catalog.set(loaded);
+            logger.debug("Faculty catalog loaded, faculties: {}", loaded.size());
+        }
+    }
+
+    public void onFacultySaved(Faculty faculty) {
+        if (filterMode == FilterMode.MEMORY) {
+            logger.debug("Refresh faculty with ID {} in catalog", faculty.getId());
+            catalog.updateAndGet(current -> current.with(faculty));
+        }
+    }
+
+    /**
+     * PATCH проходит мимо FacultyCatalogListener: каталог обновляется по самому патчу
+     */
+    public void onFacultyPatched(Long id, FacultyPatch patch) {
+        if (filterMode == FilterMode.MEMORY) {
+            logger.debug("Patch faculty with ID {} in catalog", id);
+            catalog.updateAndGet(current -> current.with(id, patch));
+        }
     }
 
+    public void onFacultyDeleted(Long id) {
+        if (filterMode == FilterMode.MEMORY) {
+            logger.debug("Remove faculty with ID {} from catalog", id);
+            catalog.updateAndGet(current -> current.without(id));
+        }
+    }
+
+    /**
+     * Всегда новая запись: id и версия из тела не используются, иначе persist получил бы отсоединенную сущность
+     */
     public Faculty createFaculty(Faculty faculty) {
         logger.info("Was invoked method for faculty student");
         logger.debug("Was create faculty with ID: {}", faculty.getId());
+        faculty.setId(null);
+        faculty.setVersion(null);
         return facultyRepository.save(faculty);
     }
 
     public Faculty getFacultyId(Long id) {
         logger.info("Was invoked method for get faculty by id");
-        logger.warn("Faculty with ID {} not faund", id);
-        return facultyRepository.findById(id).get();
+        Faculty faculty = facultyRepository.findById(id).orElse(null);
+        if (faculty == null) {
+            logger.warn("Faculty with ID {} not found", id);
+        }
+        return faculty;
+    }
+
+    /**
+     * Факультет со страницей студентов: факультет читается по id (обычно из кэша второго уровня), <br/>
+     * студенты - одним постраничным запросом к student, коллекция Faculty.students не загружается. null - если факультета нет
+     */
+    @Transactional(readOnly = true)
+    public FacultyDetails getFacultyDetails(Long id, int page, int size) {
+        logger.info("Was invoked method for get faculty with students by id");
+        logger.debug("Get faculty with ID {} and students page {} of size {}", id, page, size);
+        return facultyRepository.findById(id)
+                .map(faculty -> FacultyDetails.of(faculty, findStudentsPage(id, page, size)))
+                .orElse(null);
     }
 
+    /**
+     * Текущая версия факультета без загрузки сущности или null, если его нет
+     */
+    public Long getFacultyVersion(Long id) {
+        logger.debug("Get version of faculty with ID {}", id);
+        return id == null ? null : facultyRepository.findVersionById(id).orElse(null);
+    }
+
+    /**
+     * Версия из тела проверяется при сохранении: устаревшая - ObjectOptimisticLockingFailureException. <br/>
+     * Без версии в теле берется текущая, то есть последняя запись побеждает, как до появления версий. <br/>
+     * Записи нет - null (404), есть ли версия в теле или нет
+     */
     public Faculty updateFaculty(Faculty faculty) {
         logger.info("Was invoked method for update faculty");
-        logger.warn("Attempt to update a non-existent faculty with ID: {}", faculty.getId());
+        logger.debug("Update faculty with ID: {}", faculty.getId());
+        Long version = getFacultyVersion(faculty.getId());
+        if (version == null) {
+            logger.warn("Faculty with ID {} not found", faculty.getId());
+            return null;
+        }
+        if (faculty.getVersion() == null) {
+            faculty.setVersion(version);
+        }
         return facultyRepository.save(faculty);
     }
 
@@ -49,30 +152,59 @@ public class FacultyService {
         facultyRepository.deleteById(id);
     }
 
-    public Collection<Faculty> filterColor(String color) {
+    @Transactional(readOnly = true)
+    public Collection<FacultyView> filterColor(String color) {
         logger.info("Was invoked method for filtering faculty by color");
         logger.debug("Filtering faculty by color: {}", color);
+        if (filterMode == FilterMode.MEMORY) {
+            return catalog.get().findByColor(color);
+        }
+        if (filterMode == FilterMode.DATABASE) {
+            return facultyRepository.findViewsByColor(color);
+        }
         return facultyRepository.findAll().stream()
                 .filter(faculty -> Objects.equals(faculty.getColor(), color))
+                .map(FacultyView::of)
                 .collect(Collectors.toList());
     }
 
-    public Collection<Faculty> findByNameOrColor(String findParameter) {
+    @Transactional(readOnly = true)
+    public Collection<FacultyView> findByNameOrColor(String findParameter) {
         logger.info("Was invoked method for search faculty by name or color");
         logger.debug("Search faculty by name or color - findParameter: {}", findParameter);
-        return facultyRepository.findByNameOrColorIgnoreCase(findParameter, findParameter);
+        if (filterMode == FilterMode.MEMORY) {
+            return catalog.get().findByNameOrColorIgnoreCase(findParameter);
+        }
+        return facultyRepository.findViewsByNameOrColorIgnoreCase(findParameter, findParameter);
     }
 
-    public Collection<Student> getStudentsByFaculty(Long id) {
+    /**
+     * Страница студентов факультета с общим числом студентов или null, если факультета нет
+     */
+    @Transactional(readOnly = true)
+    public Page<StudentView> getStudentsByFaculty(Long id, int page, int size) {
         logger.info("Was invoked method for get students faculty by id");
-        logger.debug("Get students faculty by ID: {}", id);
-        return facultyRepository.findById(id).map(Faculty::getStudents).orElseThrow();
+        logger.debug("Get students faculty by ID: {}, page {} of size {}", id, page, size);
+        return facultyRepository.findById(id)
+                .map(faculty -> findStudentsPage(id, page, size))
+                .orElse(null);
+    }
+
+    private Page<StudentView> findStudentsPage(Long facultyId, int page, int size) {
+        return studentRepository.findViewsByFacultyId(facultyId, PageRequest.of(page, size, Sort.by("id")));
     }
 
     public String getLongestFacultyName() {
-        logger.info("Was invoked method for get longest faculty name with stream");
+        logger.info("Was invoked method for get longest faculty name");
+        logger.debug("Get longest faculty name, filter mode: {}", filterMode);
+        if (filterMode == FilterMode.MEMORY) {
+            return catalog.get().getLongestName();
+        }
+        if (filterMode == FilterMode.DATABASE) {
+            String longestName = facultyRepository.getLongestFacultyName();
+            return longestName == null ? "" : longestName;
+        }
         List<Faculty> faculties = facultyRepository.findAll();
-        logger.debug("Get longest faculty name");
         return faculties.stream()
                 .map(Faculty::getName)
                 .max(Comparator.comparingInt(String::length))
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Способ выполнения фильтрации и агрегации в сервисах: <br/>
+ * DATABASE - запросом к базе данных (по индексам), <br/>
+ * STREAM - стримом по всем записям из findAll() (исходный вариант, оставлен для сравнения в тестах и бенчмарках), <br/>
+ * MEMORY - по снимку данных в памяти без обращения к базе (для факультетов - FacultyCatalog, для студентов - StudentColumns)
+ */
+public enum FilterMode {
+
+    DATABASE,
+    STREAM,
+    MEMORY
+
+}
@@ -1,7 +1,9 @@
 package ru.hogwarts.school.service;
 
+import io.micrometer.core.annotation.Timed;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.stereotype.Service;
+import ru.hogwarts.school.config.MetricsConfig;
 
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
@@ -14,59 +16,48 @@ import org.slf4j.LoggerFactory;
  */
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class InfoService {
 
     private static final Logger logger = LoggerFactory.getLogger(InfoService.class);
 
     /**
      * Представлено 3 метода подсчета суммы значений в заданном диапазоне, для получения результата за наименьшее время по сравнению с предложенным алгоритмом (исходный код) <br/>
-     * По итогу произведенных вычислений, наиболее быстрый подсчет производится с помощью метода getSumArithmeticProgression() для него и создан эндпоинт в InfoController <br/>
-     * Параллельный стрим лучше не использовать, т.к. время подсчета при этом увеличивается втрое по сравнению с последовательным выполнением
+     * Время выполнения всех вариантов измеряется JMH-бенчмарком InfoServiceBenchmark (профиль benchmark), а не замерами внутри методов <br/>
+     * Наиболее быстрый подсчет производится с помощью метода getSumArithmeticProgression() - для него и создан эндпоинт в InfoController
      */
 
     @Operation(summary = "Вычисление целочисленного значения по заданной формуле (исходный код)")
     public int sumSource() {
-        long startTime = System.currentTimeMillis();
         int sum = Stream.iterate(1, a -> a + 1)
                 .limit(1_000_000)
                 .reduce(0, (a, b) -> a + b);
-        long endTime = System.currentTimeMillis();
-        logger.info("Calculation of the sum by the method sumSource took {} ms", (endTime - startTime));
-        System.out.println("Результат вычисления методом sumSource = " + sum + " Time = " + (endTime - startTime));
+        logger.debug("Result of the sum by the method sumSource: {}", sum);
         return sum;
     }
 
     @Operation(summary = "Вычисление с использованием переменной типа Long вместо int из-за переполнения допустимого значения")
     public Long getSum() {
-        long startTime = System.currentTimeMillis();
         Long sum = Stream.iterate(1L, a -> a + 1)
                 .limit(1_000_000)
                 .reduce(0L, (a, b) -> a + b);
-        long endTime = System.currentTimeMillis();
-        logger.info("Calculation of the sum by the method getSum took {} ms", (endTime - startTime));
-        System.out.println("Результат вычисления методом getSum = " + sum + " Time = " + (endTime - startTime));
+        logger.debug("Result of the sum by the method getSum: {}", sum);
         return sum;
     }
 
     public Long getSumParallelStream() {
-        long startTime = System.currentTimeMillis();
         Long sum = LongStream.iterate(1L, a -> a + 1)
                 .limit(1_000_000L)
                 .parallel()
                 .reduce(0L, Long::sum);
-        long endTime = System.currentTimeMillis();
-        logger.info("Parallel stream calculation took {} ms", (endTime - startTime));
-        System.out.println("Результат вычисления методом getSumParallelStream = " + sum + " Time = " + (endTime - startTime));
+        logger.debug("Result of the parallel stream calculation: {}", sum);
         return sum;
     }
 
     public long getSumArithmeticProgression() {
-        long startTime = System.currentTimeMillis();
         int n = 1_000_000;
         long sum = (long) n * (n + 1) / 2;
-        long endTime = System.currentTimeMillis();
-        logger.info("Arithmetic progression calculation took {} ms", (endTime - startTime));
-        System.out.println("Результат вычисления методом getSumArithmeticProgression = " + sum + " Time = " + (endTime - startTime));
+        logger.debug("Result of the arithmetic progression calculation: {}", sum);
         return sum;
     }
 
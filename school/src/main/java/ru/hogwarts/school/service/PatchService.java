@@ -0,0 +1,99 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+/**
+ * Частичное обновление студентов и факультетов по JSON Merge Patch: одна строка меняется одним UPDATE без чтения сущности. <br/>
+ * Массовый UPDATE проходит мимо слушателей Hibernate, поэтому снимки и индексы в памяти обновляются здесь, после фиксации. <br/>
+ * Сумму возрастов в StudentAggregate PATCH не трогает: поправка требовала бы прочитать старый возраст вторым запросом, <br/>
+ * ее делает сверка StudentAggregateService по расписанию. Кэш второго уровня Hibernate сбрасывает для такого UPDATE сам
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class PatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatchService.class);
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final StudentService studentService;
+    private final FacultyService facultyService;
+    private final SearchService searchService;
+
+    public PatchService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                        StudentService studentService, FacultyService facultyService, SearchService searchService) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.studentService = studentService;
+        this.facultyService = facultyService;
+        this.searchService = searchService;
+    }
+
+    /**
+     * true - студент изменен; false - студента нет или его версия не равна version (если она передана). <br/>
+     * Пустой патч ничего не пишет и только проверяет студента по версии
+     */
+    @Transactional
+    public boolean patchStudent(Long id, StudentPatch patch, Long version) {
+        logger.info("Was invoked method for patch student");
+        logger.debug("Patch student with ID {}, fields: {}", id, patch.fields());
+        if (patch.isEmpty()) {
+            return matches(studentService.getStudentVersion(id), version);
+        }
+        if (studentRepository.patch(id, patch, version) == 0) {
+            logger.debug("Student with ID {} not patched: missing or version changed", id);
+            return false;
+        }
+        afterCommit(() -> {
+            studentService.onStudentPatched(id, patch);
+            searchService.onStudentPatched(id, patch);
+        });
+        return true;
+    }
+
+    /**
+     * Как patchStudent, но для факультета
+     */
+    @Transactional
+    public boolean patchFaculty(Long id, FacultyPatch patch, Long version) {
+        logger.info("Was invoked method for patch faculty");
+        logger.debug("Patch faculty with ID {}, fields: {}", id, patch.fields());
+        if (patch.isEmpty()) {
+            return matches(facultyService.getFacultyVersion(id), version);
+        }
+        if (facultyRepository.patch(id, patch, version) == 0) {
+            logger.debug("Faculty with ID {} not patched: missing or version changed", id);
+            return false;
+        }
+        afterCommit(() -> {
+            facultyService.onFacultyPatched(id, patch);
+            searchService.onFacultyPatched(id, patch);
+        });
+        return true;
+    }
+
+    private static boolean matches(Long current, Long expected) {
+        return current != null && (expected == null || current.equals(expected));
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,153 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.SearchHit;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Нечеткий поиск по имени студента, названию и цвету факультета через TrigramIndex в памяти вместо LIKE '%...%' по таблицам. <br/>
+ * Индекс строится при старте, обновляется после каждой зафиксированной записи (см. SearchIndexListener) <br/>
+ * и перестраивается из базы по расписанию (reload)
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class SearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    public static final String STUDENT = "student";
+    public static final String FACULTY = "faculty";
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+
+    /**
+     * Нижняя граница оценки сходства, school.search.min-score - более слабые совпадения не возвращаются
+     */
+    private final double minScore;
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    /**
+     * Число изменений индекса после фиксации записей - по нему reload узнает, что прочитанные строки могли устареть
+     */
+    private long changes;
+
+    public SearchService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                         @Value("${school.search.min-score:0.3}") double minScore) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.minScore = minScore;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        index.load(readDocuments());
+        logger.debug("Search index rebuilt, documents: {}", index.size());
+    }
+
+    /**
+     * Перестройка индекса из базы с интервалом сверки агрегата студентов (school.student.aggregate.reconcile-interval) - <br/>
+     * исправляет расхождение после записей, которых слушатели не видели. Если за время чтения индекс изменился, <br/>
+     * перестройка пропускается до следующего раза
+     */
+    @Scheduled(fixedDelayString = "${school.student.aggregate.reconcile-interval:10m}",
+            initialDelayString = "${school.student.aggregate.reconcile-interval:10m}")
+    public void reload() {
+        logger.info("Was invoked method for reload search index");
+        long seen;
+        synchronized (this) {
+            seen = changes;
+        }
+        List<TrigramIndex.Document> documents = readDocuments();
+        synchronized (this) {
+            if (changes != seen) {
+                logger.debug("Search index changed while reading, reload is left to the next run");
+                return;
+            }
+            index.load(documents);
+        }
+        logger.debug("Search index reloaded, documents: {}", index.size());
+    }
+
+    private List<TrigramIndex.Document> readDocuments() {
+        List<TrigramIndex.Document> documents = new ArrayList<>();
+        studentRepository.findRows()
+                .forEach(row -> documents.add(new TrigramIndex.Document(STUDENT, row.id(), "name", row.name())));
+        for (Faculty faculty : facultyRepository.findAll()) {
+            documents.add(new TrigramIndex.Document(FACULTY, faculty.getId(), "name", faculty.getName()));
+            documents.add(new TrigramIndex.Document(FACULTY, faculty.getId(), "color", faculty.getColor()));
+        }
+        return documents;
+    }
+
+    public synchronized void onStudentSaved(Student student) {
+        changes++;
+        logger.debug("Refresh student with ID {} in search index", student.getId());
+        index.put(new TrigramIndex.Document(STUDENT, student.getId(), "name", student.getName()));
+    }
+
+    public synchronized void onStudentPatched(Long id, StudentPatch patch) {
+        changes++;
+        if (patch.has(StudentPatch.NAME)) {
+            logger.debug("Patch student with ID {} in search index", id);
+            index.put(new TrigramIndex.Document(STUDENT, id, "name", patch.name()));
+        }
+    }
+
+    public synchronized void onStudentDeleted(Long id) {
+        changes++;
+        logger.debug("Remove student with ID {} from search index", id);
+        index.remove(new TrigramIndex.Key(STUDENT, id, "name"));
+    }
+
+    public synchronized void onFacultySaved(Faculty faculty) {
+        changes++;
+        logger.debug("Refresh faculty with ID {} in search index", faculty.getId());
+        index.put(new TrigramIndex.Document(FACULTY, faculty.getId(), "name", faculty.getName()));
+        index.put(new TrigramIndex.Document(FACULTY, faculty.getId(), "color", faculty.getColor()));
+    }
+
+    public synchronized void onFacultyPatched(Long id, FacultyPatch patch) {
+        changes++;
+        logger.debug("Patch faculty with ID {} in search index", id);
+        if (patch.has(FacultyPatch.NAME)) {
+            index.put(new TrigramIndex.Document(FACULTY, id, "name", patch.name()));
+        }
+        if (patch.has(FacultyPatch.COLOR)) {
+            index.put(new TrigramIndex.Document(FACULTY, id, "color", patch.color()));
+        }
+    }
+
+    public synchronized void onFacultyDeleted(Long id) {
+        changes++;
+        logger.debug("Remove faculty with ID {} from search index", id);
+        index.remove(new TrigramIndex.Key(FACULTY, id, "name"));
+        index.remove(new TrigramIndex.Key(FACULTY, id, "color"));
+    }
+
+    /**
+     * Студенты и факультеты, похожие на запрос, по убыванию сходства; опечатки и часть слова тоже находятся
+     */
+    public List<SearchHit> search(String query, int limit) {
+        logger.info("Was invoked method for search");
+        logger.debug("Search '{}', limit: {}", query, limit);
+        return index.search(query, minScore, limit);
+    }
+
+}
@@ -0,0 +1,53 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.model.StudentAggregate;
+import ru.hogwarts.school.repository.StudentAggregateRepository;
+
+/**
+ * Сверка StudentAggregate с таблицей student: при старте и раз в school.student.aggregate.reconcile-interval. <br/>
+ * Строка агрегата блокируется до пересчета, поэтому приращения параллельных транзакций применяются <br/>
+ * либо до сверки (и попадают в пересчет), либо после нее - поверх исправленного значения
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class StudentAggregateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAggregateService.class);
+
+    private final StudentAggregateRepository studentAggregateRepository;
+
+    public StudentAggregateService(StudentAggregateRepository studentAggregateRepository) {
+        this.studentAggregateRepository = studentAggregateRepository;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(fixedDelayString = "${school.student.aggregate.reconcile-interval:10m}",
+            initialDelayString = "${school.student.aggregate.reconcile-interval:10m}")
+    @Transactional
+    public void reconcile() {
+        logger.info("Was invoked method for reconcile student aggregate");
+        StudentAggregate aggregate = studentAggregateRepository.findForUpdate(StudentAggregate.ID).orElse(null);
+        long count = studentAggregateRepository.countStudents();
+        long ageSum = studentAggregateRepository.sumStudentAges();
+        if (aggregate == null) {
+            logger.debug("Student aggregate created: count {}, age sum {}", count, ageSum);
+            studentAggregateRepository.save(new StudentAggregate(StudentAggregate.ID, count, ageSum));
+            return;
+        }
+        if (aggregate.getStudentCount() != count || aggregate.getAgeSum() != ageSum) {
+            logger.warn("Student aggregate drifted: {}, actual count {}, age sum {}", aggregate, count, ageSum);
+            aggregate.setStudentCount(count);
+            aggregate.setAgeSum(ageSum);
+        }
+    }
+
+}
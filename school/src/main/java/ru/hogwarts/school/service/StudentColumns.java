@@ -0,0 +1,290 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.StudentRow;
+import ru.hogwarts.school.dto.StudentView;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Поколоночный снимок таблицы student для аналитических запросов: id, возраст и id факультета - примитивными массивами, <br/>
+ * имена - кодами в словаре. Строки упорядочены по id, поэтому поиск строки - бинарный поиск, а результат - в порядке id. <br/>
+ * Фильтры и агрегаты - циклы по массивам без объектов на строку; от parallelThreshold строк агрегаты считаются параллельно. <br/>
+ * Запись обновляет снимок на месте под блокировкой записи, чтение идет под блокировкой чтения
+ */
+final class StudentColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_FACULTY = 0;
+
+    /**
+     * Диапазон возрастов, до которого гистограмма считается в массиве по смещению от минимума; шире - в TreeMap
+     */
+    private static final int DENSE_HISTOGRAM_RANGE = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int parallelThreshold;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] ages = new int[INITIAL_CAPACITY];
+    private int[] nameCodes = new int[INITIAL_CAPACITY];
+    private long[] facultyIds = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Словарь имен: код - индекс в names, nameRefs - число строк с этим кодом. <br/>
+     * Код, на который больше не ссылается ни одна строка (удаление, смена имени), освобождается и выдается следующему новому имени
+     */
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final Deque<Integer> freeCodes = new ArrayDeque<>();
+    private int[] nameRefs = new int[INITIAL_CAPACITY];
+
+    StudentColumns(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Полная загрузка; строки должны идти по возрастанию id
+     */
+    void load(Collection<StudentRow> rows) {
+        lock.writeLock().lock();
+        try {
+            int capacity = Math.max(INITIAL_CAPACITY, rows.size());
+            ids = new long[capacity];
+            ages = new int[capacity];
+            nameCodes = new int[capacity];
+            facultyIds = new long[capacity];
+            names.clear();
+            codes.clear();
+            freeCodes.clear();
+            nameRefs = new int[capacity];
+            size = 0;
+            for (StudentRow row : rows) {
+                ids[size] = row.id();
+                nameCodes[size] = acquireCode(row.name());
+                set(size, row);
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void put(StudentRow row) {
+        lock.writeLock().lock();
+        try {
+            int index = Arrays.binarySearch(ids, 0, size, row.id());
+            int code = acquireCode(row.name());
+            if (index < 0) {
+                index = -index - 1;
+                ensureCapacity();
+                shift(index, index + 1, size - index);
+                ids[index] = row.id();
+                size++;
+            } else {
+                releaseCode(nameCodes[index]);
+            }
+            nameCodes[index] = code;
+            set(index, row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                releaseCode(nameCodes[index]);
+                shift(index + 1, index, size - index - 1);
+                size--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Строка студента из снимка или null, если его нет
+     */
+    StudentRow get(long id) {
+        lock.readLock().lock();
+        try {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return null;
+            }
+            long facultyId = facultyIds[index];
+            return new StudentRow(id, names.get(nameCodes[index]), ages[index], facultyId == NO_FACULTY ? null : facultyId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<StudentView> findByAge(int age) {
+        return findByAgeBetween(age, age);
+    }
+
+    List<StudentView> findByAgeBetween(int minAge, int maxAge) {
+        lock.readLock().lock();
+        try {
+            List<StudentView> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int age = ages[i];
+                if (age >= minAge && age <= maxAge) {
+                    result.add(view(i));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Средний возраст или null, если студентов нет - как AVG по пустой таблице
+     */
+    Double getAverageAge() {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return null;
+            }
+            long sum;
+            if (size >= parallelThreshold) {
+                int[] column = ages;
+                sum = IntStream.range(0, size).parallel().mapToLong(i -> column[i]).sum();
+            } else {
+                sum = 0;
+                for (int i = 0; i < size; i++) {
+                    sum += ages[i];
+                }
+            }
+            return (double) sum / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Число студентов по каждому возрасту, по возрастанию возраста; facultyId - только студенты факультета, null - все
+     */
+    Map<Integer, Long> getAgeHistogram(Long facultyId) {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new TreeMap<>();
+            }
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, ages[i]);
+                max = Math.max(max, ages[i]);
+            }
+            Map<Integer, Long> histogram = new TreeMap<>();
+            if ((long) max - min >= DENSE_HISTOGRAM_RANGE) {
+                for (int i = 0; i < size; i++) {
+                    if (facultyId == null || facultyIds[i] == facultyId) {
+                        histogram.merge(ages[i], 1L, Long::sum);
+                    }
+                }
+                return histogram;
+            }
+            long[] counts = new long[max - min + 1];
+            if (facultyId == null) {
+                for (int i = 0; i < size; i++) {
+                    counts[ages[i] - min]++;
+                }
+            } else {
+                long faculty = facultyId;
+                for (int i = 0; i < size; i++) {
+                    if (facultyIds[i] == faculty) {
+                        counts[ages[i] - min]++;
+                    }
+                }
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    histogram.put(min + i, counts[i]);
+                }
+            }
+            return histogram;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private StudentView view(int index) {
+        return new StudentView(ids[index], names.get(nameCodes[index]), ages[index]);
+    }
+
+    private void set(int index, StudentRow row) {
+        ages[index] = row.age();
+        facultyIds[index] = row.facultyId() == null ? NO_FACULTY : row.facultyId();
+    }
+
+    private int acquireCode(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = freeCodes.poll();
+            if (code == null) {
+                code = names.size();
+                names.add(name);
+                if (code == nameRefs.length) {
+                    nameRefs = Arrays.copyOf(nameRefs, code * 2);
+                }
+            } else {
+                names.set(code, name);
+            }
+            codes.put(name, code);
+        }
+        nameRefs[code]++;
+        return code;
+    }
+
+    private void releaseCode(int code) {
+        if (--nameRefs[code] == 0) {
+            codes.remove(names.set(code, null));
+            freeCodes.push(code);
+        }
+    }
+
+    private void ensureCapacity() {
+        if (size < ids.length) {
+            return;
+        }
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+        facultyIds = Arrays.copyOf(facultyIds, capacity);
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(ids, from, ids, to, length);
+        System.arraycopy(ages, from, ages, to, length);
+        System.arraycopy(nameCodes, from, nameCodes, to, length);
+        System.arraycopy(facultyIds, from, facultyIds, to, length);
+    }
+
+}
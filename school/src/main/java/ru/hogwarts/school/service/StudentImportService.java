@@ -0,0 +1,243 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.StudentImportRow;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Массовый импорт студентов с обновлением по имени. <br/>
+ * Строки пишутся пачками по school.import.batch-size, каждая пачка - своя транзакция: id берутся из последовательности <br/>
+ * с шагом 50, а INSERT/UPDATE уходят в базу JDBC-пакетами (hibernate.jdbc.batch_size, order_inserts, order_updates). <br/>
+ * Если пачка не записалась, она повторяется построчно - ошибки попадают в отчет, остальные строки сохраняются. <br/>
+ * Параллельный импорт того же имени упирается в student_name_unique_index или в @Version; строка тогда <br/>
+ * перечитывается и записывается еще раз - вставка другого импорта становится обновлением
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class StudentImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentImportService.class);
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public StudentImportService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${school.import.batch-size:500}") int batchSize) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Строка с номером во входных данных - для отчета об ошибках
+     */
+    private record NumberedRow(int row, StudentImportRow data) {
+    }
+
+    private record BatchResult(int created, int updated) {
+    }
+
+    public ImportReport importStudents(List<StudentImportRow> rows) {
+        logger.info("Was invoked method for import students");
+        List<NumberedRow> numbered = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            numbered.add(new NumberedRow(i + 1, rows.get(i)));
+        }
+        return importRows(numbered, new ArrayList<>(), rows.size());
+    }
+
+    /**
+     * CSV с колонками name,age[,facultyId]; строка заголовка необязательна
+     */
+    public ImportReport importStudentsCsv(Reader reader) throws IOException {
+        logger.info("Was invoked method for import students from CSV");
+        List<NumberedRow> rows = new ArrayList<>();
+        List<ImportReport.RowError> errors = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        int row = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(line);
+            if (row == 0 && fields.get(0).trim().toLowerCase(Locale.ROOT).equals("name")) {
+                continue;
+            }
+            row++;
+            try {
+                rows.add(new NumberedRow(row, toImportRow(fields)));
+            } catch (IllegalArgumentException e) {
+                errors.add(new ImportReport.RowError(row, fields.get(0).trim(), e.getMessage()));
+            }
+        }
+        return importRows(rows, errors, row);
+    }
+
+    private ImportReport importRows(List<NumberedRow> rows, List<ImportReport.RowError> errors, int total) {
+        logger.debug("Import of {} rows, batch size: {}", total, batchSize);
+        int created = 0;
+        int updated = 0;
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<NumberedRow> batch = new ArrayList<>(Math.min(batchSize, rows.size() - from));
+            for (NumberedRow row : rows.subList(from, Math.min(from + batchSize, rows.size()))) {
+                String error = validate(row.data());
+                if (error == null) {
+                    batch.add(row);
+                } else {
+                    errors.add(new ImportReport.RowError(row.row(), row.data().name(), error));
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                BatchResult result = transactionTemplate.execute(status -> write(batch));
+                created += result.created();
+                updated += result.updated();
+            } catch (RuntimeException e) {
+                logger.debug("Batch starting at row {} failed, retrying row by row", batch.get(0).row(), e);
+                for (NumberedRow row : batch) {
+                    try {
+                        BatchResult result = writeRow(row);
+                        created += result.created();
+                        updated += result.updated();
+                    } catch (RuntimeException rowException) {
+                        errors.add(new ImportReport.RowError(row.row(), row.data().name(),
+                                NestedExceptionUtils.getMostSpecificCause(rowException).getMessage()));
+                    }
+                }
+            }
+        }
+        errors.sort(Comparator.comparingInt(ImportReport.RowError::row));
+        logger.debug("Import finished: created {}, updated {}, failed {}", created, updated, errors.size());
+        return new ImportReport(total, created, updated, List.copyOf(errors));
+    }
+
+    /**
+     * Строка в своей транзакции; если ее имя успел записать или изменить другой импорт, строка перечитывается один раз
+     */
+    private BatchResult writeRow(NumberedRow row) {
+        try {
+            return transactionTemplate.execute(status -> write(List.of(row)));
+        } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+            logger.debug("Row {} conflicts with a concurrent write, retrying", row.row(), e);
+            return transactionTemplate.execute(status -> write(List.of(row)));
+        }
+    }
+
+    /**
+     * Существующие студенты пачки выбираются одним запросом по именам; новые сохраняются без немедленного INSERT - <br/>
+     * все изменения уходят JDBC-пакетами при фиксации транзакции
+     */
+    private BatchResult write(List<NumberedRow> batch) {
+        List<String> names = batch.stream().map(row -> row.data().name()).toList();
+        Map<String, Student> students = new HashMap<>();
+        for (Student student : studentRepository.findByNameIn(names)) {
+            students.putIfAbsent(student.getName(), student);
+        }
+        int created = 0;
+        int updated = 0;
+        List<Student> newStudents = new ArrayList<>();
+        for (NumberedRow row : batch) {
+            StudentImportRow data = row.data();
+            Student student = students.get(data.name());
+            if (student == null) {
+                student = new Student(null, data.name(), data.age());
+                students.put(data.name(), student);
+                newStudents.add(student);
+                created++;
+            } else {
+                student.setAge(data.age());
+                updated++;
+            }
+            if (data.facultyId() != null) {
+                student.setFaculty(facultyRepository.getReferenceById(data.facultyId()));
+            }
+        }
+        studentRepository.saveAll(newStudents);
+        return new BatchResult(created, updated);
+    }
+
+    private static String validate(StudentImportRow row) {
+        if (row.name() == null || row.name().isBlank()) {
+            return "Name is required";
+        }
+        if (row.age() == null || row.age() < 0) {
+            return "Age must be a non-negative number";
+        }
+        return null;
+    }
+
+    private static StudentImportRow toImportRow(List<String> fields) {
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected name,age[,facultyId]");
+        }
+        try {
+            Integer age = fields.get(1).isBlank() ? null : Integer.valueOf(fields.get(1).trim());
+            Long facultyId = fields.size() < 3 || fields.get(2).isBlank() ? null : Long.valueOf(fields.get(2).trim());
+            return new StudentImportRow(fields.get(0).trim(), age, facultyId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Age and facultyId must be numbers");
+        }
+    }
+
+    /**
+     * Поля через запятую; поле в кавычках может содержать запятые, кавычка внутри него удваивается
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+}
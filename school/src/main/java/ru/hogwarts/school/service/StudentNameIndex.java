@@ -0,0 +1,85 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.StudentRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Индекс имен студентов для поиска по префиксу. Ключ - имя, приведенное к ключу сортировки: верхний регистр и Ё -> Е. <br/>
+ * В таком виде кириллица А-Я и латиница A-Z идут подряд в порядке алфавита, поэтому сравнение ключей - обычное <br/>
+ * сравнение строк, а все имена с префиксом - непрерывный диапазон [префикс, префикс + Character.MAX_VALUE) в skip list. <br/>
+ * Поиск - O(log n + limit), чтение без блокировок; записи упорядочены между собой через synchronized
+ */
+final class StudentNameIndex {
+
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+
+    /**
+     * Ключ записи: имена-дубликаты различаются по id студента
+     */
+    private record Key(String folded, long id) {
+
+        static final Comparator<Key> ORDER = Comparator.comparing(Key::folded).thenComparingLong(Key::id);
+
+    }
+
+    private final ConcurrentSkipListMap<Key, String> names = new ConcurrentSkipListMap<>(Key.ORDER);
+    private final Map<Long, Key> keys = new ConcurrentHashMap<>();
+
+    static String fold(String name) {
+        return name.toUpperCase(RUSSIAN).replace('Ё', 'Е');
+    }
+
+    synchronized void load(Collection<StudentRow> rows) {
+        names.clear();
+        keys.clear();
+        for (StudentRow row : rows) {
+            put(row.id(), row.name());
+        }
+    }
+
+    synchronized void put(long id, String name) {
+        remove(id);
+        if (name != null) {
+            Key key = new Key(fold(name), id);
+            names.put(key, name);
+            keys.put(id, key);
+        }
+    }
+
+    synchronized void remove(long id) {
+        Key key = keys.remove(id);
+        if (key != null) {
+            names.remove(key);
+        }
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /**
+     * Имена с заданным префиксом без учета регистра и различия Е/Ё, в порядке ключа сортировки, не больше limit
+     */
+    List<String> findByPrefix(String prefix, int limit) {
+        String folded = fold(prefix);
+        Collection<String> range = names.subMap(new Key(folded, Long.MIN_VALUE), true,
+                new Key(folded + Character.MAX_VALUE, Long.MIN_VALUE), false).values();
+        List<String> result = new ArrayList<>(Math.min(limit, 64));
+        for (String name : range) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+}
@@ -1,41 +1,206 @@
 package ru.hogwarts.school.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.dto.StudentRow;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.StudentRepository;
 
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class StudentService {
 
     private static final Logger logger = LoggerFactory.getLogger(StudentService.class);
 
+    /**
+     * С этого числа студентов агрегаты по снимку считаются параллельно
+     */
+    private static final int PARALLEL_THRESHOLD = 100_000;
+
     private final StudentRepository studentRepository;
 
-    public StudentService(StudentRepository studentRepository) {
+    /**
+     * Переключатель school.student.filter-mode: DATABASE (по умолчанию) - фильтрация и агрегация запросами к базе, <br/>
+     * STREAM - исходные стримы по findAll() для сравнения в тестах и бенчмарках, <br/>
+     * MEMORY - фильтрация и агрегация по поколоночному снимку StudentColumns без обращения к базе
+     */
+    private final FilterMode filterMode;
+
+    /**
+     * Снимок студентов для режима MEMORY - обновляется после каждой зафиксированной записи (см. StudentColumnsListener) <br/>
+     * и перечитывается из базы по расписанию (reloadSnapshot)
+     */
+    private final StudentColumns columns = new StudentColumns(PARALLEL_THRESHOLD);
+
+    /**
+     * Индекс имен для поиска по префиксу - во всех режимах, кроме STREAM, обновляется так же, как снимок
+     */
+    private final StudentNameIndex nameIndex = new StudentNameIndex();
+
+    /**
+     * Число изменений снимка и индекса имен после фиксации записей - по нему reloadSnapshot узнает, <br/>
+     * что строки, прочитанные из базы, могли устареть за время чтения
+     */
+    private long changes;
+
+    public StudentService(StudentRepository studentRepository,
+                          @Value("${school.student.filter-mode:DATABASE}") FilterMode filterMode) {
         this.studentRepository = studentRepository;
+        this.filterMode = filterMode;
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        if (filterMode == FilterMode.STREAM) {
+            return;
+        }
+        load(studentRepository.findRows());
     }
 
+    /**
+     * Перезагрузка снимка и индекса имен из базы с интервалом сверки агрегата (school.student.aggregate.reconcile-interval). <br/>
+     * Слушатели видят только записи этого экземпляра через Hibernate - запись SQL в обход него или с другого экземпляра <br/>
+     * иначе расходилась бы с базой до перезапуска. Если за время чтения снимок изменился, прочитанные строки могут быть <br/>
+     * старее него - перезагрузка пропускается до следующего раза
+     */
+    @Scheduled(fixedDelayString = "${school.student.aggregate.reconcile-interval:10m}",
+            initialDelayString = "${school.student.aggregate.reconcile-interval:10m}")
+    public void reloadSnapshot() {
+        if (filterMode == FilterMode.STREAM) {
+            return;
+        }
+        logger.info("Was invoked method for reload student snapshot");
+        long seen;
+        synchronized (this) {
+            seen = changes;
+        }
+        List<StudentRow> rows = studentRepository.findRows();
+        synchronized (this) {
+            if (changes != seen) {
+                logger.debug("Student snapshot changed while reading, reload is left to the next run");
+                return;
+            }
+            load(rows);
+        }
+    }
+
+    private void load(List<StudentRow> rows) {
+        nameIndex.load(rows);
+        logger.debug("Student name index loaded, names: {}", nameIndex.size());
+        if (filterMode == FilterMode.MEMORY) {
+            columns.load(rows);
+            logger.debug("Student snapshot loaded, students: {}", columns.size());
+        }
+    }
+
+    public synchronized void onStudentSaved(Student student) {
+        if (filterMode == FilterMode.STREAM) {
+            return;
+        }
+        logger.debug("Refresh student with ID {} in snapshot", student.getId());
+        changes++;
+        nameIndex.put(student.getId(), student.getName());
+        if (filterMode == FilterMode.MEMORY) {
+            columns.put(StudentRow.of(student));
+        }
+    }
+
+    /**
+     * PATCH меняет студента массовым UPDATE, который слушатели Hibernate не видят: снимок обновляется по самому патчу
+     */
+    public synchronized void onStudentPatched(Long id, StudentPatch patch) {
+        if (filterMode == FilterMode.STREAM) {
+            return;
+        }
+        logger.debug("Patch student with ID {} in snapshot", id);
+        changes++;
+        if (patch.has(StudentPatch.NAME)) {
+            nameIndex.put(id, patch.name());
+        }
+        if (filterMode == FilterMode.MEMORY) {
+            StudentRow row = columns.get(id);
+            if (row != null) {
+                columns.put(patch.applyTo(row));
+            }
+        }
+    }
+
+    public synchronized void onStudentDeleted(Long id) {
+        if (filterMode == FilterMode.STREAM) {
+            return;
+        }
+        logger.debug("Remove student with ID {} from snapshot", id);
+        changes++;
+        nameIndex.remove(id);
+        if (filterMode == FilterMode.MEMORY) {
+            columns.remove(id);
+        }
+    }
+
+    /**
+     * Всегда новая запись: id и версия из тела не используются, иначе persist получил бы отсоединенную сущность
+     */
     public Student createStudent(Student student) {
         logger.info("Was invoked method for create student");
         logger.debug("Was create student with ID: {}", student.getId());
+        student.setId(null);
+        student.setVersion(null);
         return studentRepository.save(student);
     }
 
     public Student getStudentId(Long id) {
         logger.info("Was invoked method for get student by id");
-        logger.warn("Student with ID {} not found", id);
-        return studentRepository.findById(id).get();
+        Student student = studentRepository.findById(id).orElse(null);
+        if (student == null) {
+            logger.warn("Student with ID {} not found", id);
+        }
+        return student;
     }
 
+    /**
+     * Текущая версия студента без загрузки сущности или null, если его нет
+     */
+    public Long getStudentVersion(Long id) {
+        logger.debug("Get version of student with ID {}", id);
+        return id == null ? null : studentRepository.findVersionById(id).orElse(null);
+    }
+
+    /**
+     * Версия из тела проверяется при сохранении: устаревшая - ObjectOptimisticLockingFailureException. <br/>
+     * Без версии в теле берется текущая, то есть последняя запись побеждает, как до появления версий. <br/>
+     * Записи нет - null (404), есть ли версия в теле или нет
+     */
     public Student updateStudent(Student student) {
         logger.info("Was invoked method for update student");
-        logger.warn("Attempt to update a non-existent student with ID: {}", student.getId());
+        logger.debug("Update student with ID: {}", student.getId());
+        Long version = getStudentVersion(student.getId());
+        if (version == null) {
+            logger.warn("Student with ID {} not found", student.getId());
+            return null;
+        }
+        if (student.getVersion() == null) {
+            student.setVersion(version);
+        }
         return studentRepository.save(student);
     }
 
@@ -45,18 +210,61 @@ public class StudentService {
         studentRepository.deleteById(id);
     }
 
-    public Collection<Student> filterAge(int age) {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> filterAge(int age) {
         logger.info("Was invoked method for filtering students by age");
         logger.debug("Filtering students by age: {} years", age);
+        if (filterMode == FilterMode.DATABASE) {
+            return studentRepository.findViewsByAge(age);
+        }
+        if (filterMode == FilterMode.MEMORY) {
+            return columns.findByAge(age);
+        }
         return studentRepository.findAll().stream()
                 .filter(student -> student.getAge() == age)
+                .map(StudentView::of)
                 .collect(Collectors.toList());
     }
 
-    public Collection<Student> findByAgeBetween(int minAge, int maxAge) {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> findByAgeBetween(int minAge, int maxAge) {
         logger.info("Was invoked method for search students by age in the range");
         logger.debug("Search students in the age range: from {} to {} years", minAge, maxAge);
-        return studentRepository.findByAgeBetween(minAge, maxAge);
+        if (filterMode == FilterMode.MEMORY) {
+            return columns.findByAgeBetween(minAge, maxAge);
+        }
+        return studentRepository.findViewsByAgeBetween(minAge, maxAge);
+    }
+
+    /**
+     * Число студентов по возрастам, по возрастанию возраста; facultyId - только студенты этого факультета
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Long> getAgeHistogram(Long facultyId) {
+        logger.info("Was invoked method for get age histogram");
+        logger.debug("Get age histogram for faculty with ID {}, filter mode: {}", facultyId, filterMode);
+        if (filterMode == FilterMode.MEMORY) {
+            return columns.getAgeHistogram(facultyId);
+        }
+        if (filterMode == FilterMode.DATABASE) {
+            return studentRepository.getAgeCounts(facultyId).stream()
+                    .collect(Collectors.toMap(AgeCount::age, AgeCount::count, Long::sum, TreeMap::new));
+        }
+        return studentRepository.findAll().stream()
+                .filter(student -> facultyId == null
+                        || student.getFaculty() != null && facultyId.equals(student.getFaculty().getId()))
+                .collect(Collectors.groupingBy(Student::getAge, TreeMap::new, Collectors.counting()));
+    }
+
+    /**
+     * Keyset-пагинация: WHERE id > :lastId ORDER BY id LIMIT :limit по первичному ключу, <br/>
+     * поэтому страница стоит одинаково на любой глубине и не сдвигается при вставках
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<StudentView> getStudentsAfter(long lastId, int limit) {
+        logger.info("Was invoked method for get students by cursor");
+        logger.debug("Request students after ID {}, limit: {}", lastId, limit);
+        return CursorPage.of(studentRepository.findViewsByIdGreaterThan(lastId, Limit.of(limit + 1)), limit, StudentView::id);
     }
 
     public Faculty getFacultyByStudent(Long id) {
@@ -77,16 +285,45 @@ public class StudentService {
         return studentRepository.getAverageAgeStudents();
     }
 
-    public Collection<Student> getLastFiveStudents() {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> getLastFiveStudents() {
         logger.info("Was invoked method for get last five students");
         logger.debug("Get last five students");
-        return studentRepository.getLastFiveStudents();
+        return studentRepository.findLastViews(Limit.of(5));
+    }
+
+    /**
+     * Имена студентов, начинающиеся с prefix без учета регистра (Е и Ё не различаются), по алфавиту, не больше limit. <br/>
+     * В режиме STREAM индекс имен не ведется - тот же отбор и порядок получаются проходом по всем строкам
+     */
+    @Transactional(readOnly = true)
+    public List<String> findNamesStartingWith(String prefix, int limit) {
+        logger.info("Was invoked method for search student names by prefix");
+        logger.debug("Search student names starting with '{}', limit: {}", prefix, limit);
+        if (filterMode != FilterMode.STREAM) {
+            return nameIndex.findByPrefix(prefix, limit);
+        }
+        String folded = StudentNameIndex.fold(prefix);
+        return studentRepository.findRows().stream()
+                .map(StudentRow::name)
+                .filter(name -> name != null && StudentNameIndex.fold(name).startsWith(folded))
+                .sorted(Comparator.comparing(StudentNameIndex::fold))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
 
     public Collection<String> getStudentNamesStartingWithA() {
-        logger.info("Was invoked method for get student names starting with A with stream");
+        logger.info("Was invoked method for get student names starting with A");
+        logger.debug("Get list student names starting with A, filter mode: {}", filterMode);
+        if (filterMode != FilterMode.STREAM) {
+            // индекс отдает диапазон без учета регистра, а здесь, как и в STREAM, нужна заглавная "А"
+            return nameIndex.findByPrefix("А", Integer.MAX_VALUE).stream()
+                    .filter(name -> name.startsWith("А"))
+                    .map(String::toUpperCase)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
         Collection<Student> students = studentRepository.findAll();
-        logger.debug("Get list student names starting with A");
         return students.stream()
                 .map(Student::getName)
                 .filter(name -> name.startsWith("А"))
@@ -96,9 +333,17 @@ public class StudentService {
     }
 
     public Double getAverageAgeAllStudents() {
-        logger.info("Was invoked method for get average age students with stream");
+        logger.info("Was invoked method for get average age all students");
+        logger.debug("Get average age all students, filter mode: {}", filterMode);
+        if (filterMode == FilterMode.DATABASE) {
+            Double averageAge = studentRepository.getAverageAgeStudents();
+            return averageAge == null ? 0.0 : averageAge;
+        }
+        if (filterMode == FilterMode.MEMORY) {
+            Double averageAge = columns.getAverageAge();
+            return averageAge == null ? 0.0 : averageAge;
+        }
         Collection<Student> students = studentRepository.findAll();
-        logger.debug("Get average age all students");
         return students.stream()
                 .mapToInt(Student::getAge)
                 .average()
@@ -0,0 +1,76 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.config.MetricsConfig;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.dto.StudentView;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Сводная статистика студентов за один запрос. <br/>
+ * Запросы к базе выполняются параллельно на ограниченном пуле studentStatsExecutor, каждый в своей транзакции <br/>
+ * и на своем соединении, поэтому сводка стоит примерно как самый медленный запрос, а не как их сумма. <br/>
+ * Каждый запрос ограничен school.stats.query-timeout: он же - таймаут транзакции (с округлением вверх до секунды), <br/>
+ * который Hibernate передает JDBC-оператору, поэтому база сама прерывает запрос (QueryTimeoutException). <br/>
+ * orTimeout остается общим ограничением вместе с ожиданием в очереди пула: при превышении - TimeoutException
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+public class StudentStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentStatsService.class);
+
+    private static final int LAST_STUDENTS = 5;
+
+    private final StudentRepository studentRepository;
+    private final AsyncTaskExecutor executor;
+    private final Duration queryTimeout;
+    private final TransactionTemplate transactionTemplate;
+
+    public StudentStatsService(StudentRepository studentRepository,
+                               @Qualifier("studentStatsExecutor") AsyncTaskExecutor executor,
+                               @Value("${school.stats.query-timeout:2s}") Duration queryTimeout,
+                               PlatformTransactionManager transactionManager) {
+        this.studentRepository = studentRepository;
+        this.executor = executor;
+        this.queryTimeout = queryTimeout;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setTimeout((int) Math.max(1, (queryTimeout.toMillis() + 999) / 1000));
+    }
+
+    public CompletableFuture<StudentStats> getStats() {
+        logger.info("Was invoked method for get student stats");
+        logger.debug("Run student stats queries in parallel, timeout per query: {}", queryTimeout);
+        CompletableFuture<Integer> count = query(studentRepository::getCountAllStudents);
+        CompletableFuture<Double> averageAge = query(studentRepository::getAverageAgeStudents);
+        CompletableFuture<List<StudentView>> lastFive = query(() -> studentRepository.findLastViews(Limit.of(LAST_STUDENTS)));
+        return CompletableFuture.allOf(count, averageAge, lastFive)
+                .thenApply(ignored -> new StudentStats(
+                        Objects.requireNonNullElse(count.join(), 0),
+                        averageAge.join(),
+                        lastFive.join()));
+    }
+
+    private <T> CompletableFuture<T> query(Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> query.get()), executor)
+                .orTimeout(queryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+}
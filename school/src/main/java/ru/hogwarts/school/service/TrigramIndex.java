@@ -0,0 +1,177 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.SearchHit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс триграмм для нечеткого поиска. Текст приводится к нижнему регистру (ё -> е), каждое слово <br/>
+ * дополняется пробелами ("  слово ") и режется на триграммы, как в pg_trgm. По триграммам запроса из индекса <br/>
+ * выбираются только документы, где есть хоть одна общая, и для них считается коэффициент Дайса: 2 * общие / (запрос + документ). <br/>
+ * Полная загрузка считает триграммы параллельно и подменяет индекс целиком. Записи упорядочены через synchronized, <br/>
+ * поиск идет без блокировок: документ публикуется одной неизменяемой записью Indexed, и оценка считается по ее триграммам, <br/>
+ * поэтому поиск видит документ целиком в старой или в новой версии. Постинги дают только кандидатов: триграммы новой версии <br/>
+ * добавляются до публикации записи, а триграммы, которых в ней нет, удаляются после
+ */
+final class TrigramIndex {
+
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+
+    /**
+     * Документ индекса - одно поле сущности
+     */
+    record Document(String type, long id, String field, String text) {
+
+        Key key() {
+            return new Key(type, id, field);
+        }
+
+    }
+
+    record Key(String type, long id, String field) {
+    }
+
+    private record Indexed(Document document, Set<String> trigrams) {
+
+        static Indexed of(Document document) {
+            return new Indexed(document, TrigramIndex.trigrams(document.text()));
+        }
+
+    }
+
+    private volatile Map<Key, Indexed> documents = new ConcurrentHashMap<>();
+    private volatile Map<String, Set<Key>> postings = new ConcurrentHashMap<>();
+
+    synchronized void load(Collection<Document> loaded) {
+        List<Indexed> indexed = loaded.parallelStream().map(Indexed::of).toList();
+        Map<String, Set<Key>> built = indexed.parallelStream()
+                .flatMap(entry -> entry.trigrams().stream().map(trigram -> Map.entry(trigram, entry.document().key())))
+                .collect(Collectors.groupingByConcurrent(Map.Entry::getKey,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toCollection(ConcurrentHashMap::newKeySet))));
+        Map<Key, Indexed> loadedDocuments = new ConcurrentHashMap<>();
+        indexed.forEach(entry -> loadedDocuments.put(entry.document().key(), entry));
+        postings = built;
+        documents = loadedDocuments;
+    }
+
+    synchronized void put(Document document) {
+        Key key = document.key();
+        if (document.text() == null || document.text().isBlank()) {
+            remove(key);
+            return;
+        }
+        Indexed entry = Indexed.of(document);
+        for (String trigram : entry.trigrams()) {
+            postings.computeIfAbsent(trigram, ignored -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        Indexed previous = documents.put(key, entry);
+        if (previous != null) {
+            Set<String> stale = new HashSet<>(previous.trigrams());
+            stale.removeAll(entry.trigrams());
+            unlink(key, stale);
+        }
+    }
+
+    synchronized void remove(Key key) {
+        Indexed entry = documents.remove(key);
+        if (entry != null) {
+            unlink(key, entry.trigrams());
+        }
+    }
+
+    private void unlink(Key key, Set<String> trigrams) {
+        for (String trigram : trigrams) {
+            Set<Key> keys = postings.get(trigram);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    /**
+     * Сущности, похожие на запрос, по убыванию оценки. Из нескольких совпавших полей сущности остается лучшее
+     */
+    List<SearchHit> search(String query, double minScore, int limit) {
+        Set<String> queryTrigrams = trigrams(query);
+        if (queryTrigrams.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Set<Key>> currentPostings = postings;
+        Set<Key> candidates = new HashSet<>();
+        for (String trigram : queryTrigrams) {
+            Set<Key> keys = currentPostings.get(trigram);
+            if (keys != null) {
+                candidates.addAll(keys);
+            }
+        }
+        Map<Key, Indexed> currentDocuments = documents;
+        List<SearchHit> hits = new ArrayList<>();
+        for (Key key : candidates) {
+            Indexed entry = currentDocuments.get(key);
+            if (entry == null) {
+                continue;
+            }
+            int common = 0;
+            for (String trigram : queryTrigrams) {
+                if (entry.trigrams().contains(trigram)) {
+                    common++;
+                }
+            }
+            double score = 2.0 * common / (queryTrigrams.size() + entry.trigrams().size());
+            if (score >= minScore) {
+                Document document = entry.document();
+                hits.add(new SearchHit(document.type(), document.id(), document.field(), document.text(), score));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                .thenComparing(SearchHit::text)
+                .thenComparing(SearchHit::id));
+        Set<String> seen = new HashSet<>();
+        List<SearchHit> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (SearchHit hit : hits) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (seen.add(hit.type() + ':' + hit.id())) {
+                result.add(hit);
+            }
+        }
+        return result;
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (text == null) {
+            return trigrams;
+        }
+        String folded = text.toLowerCase(RUSSIAN).replace('ё', 'е');
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+        return trigrams;
+    }
+
+}
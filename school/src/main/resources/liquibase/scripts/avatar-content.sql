@@ -0,0 +1,23 @@
+-- liquibase formatted sql
+
+-- Хранение файлов аватаров по SHA-256 содержимого: одна запись (и один файл) на одинаковое содержимое со счетчиком ссылок
+
+-- changeset kate:7
+CREATE TABLE avatar_content (
+    hash VARCHAR(64) PRIMARY KEY,
+    file_path VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    reference_count BIGINT NOT NULL
+);
+ALTER TABLE avatar ADD COLUMN content_hash VARCHAR(64) REFERENCES avatar_content (hash);
+CREATE INDEX avatar_content_hash_index ON avatar (content_hash);
+
+-- Перенос уже загруженных аватаров: хэш считается по копии в базе, файл остается на прежнем месте
+-- changeset kate:8 dbms:postgresql
+INSERT INTO avatar_content (hash, file_path, file_size, reference_count)
+SELECT encode(sha256(lo_get(data)), 'hex'), min(file_path), min(file_size), count(*)
+FROM avatar
+WHERE data IS NOT NULL
+GROUP BY encode(sha256(lo_get(data)), 'hex');
+UPDATE avatar SET content_hash = encode(sha256(lo_get(data)), 'hex') WHERE data IS NOT NULL;
+UPDATE avatar SET file_path = avatar_content.file_path FROM avatar_content WHERE avatar.content_hash = avatar_content.hash;
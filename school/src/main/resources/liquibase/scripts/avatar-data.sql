@@ -0,0 +1,28 @@
+-- liquibase formatted sql
+
+-- Байты аватаров переносятся из avatar в отдельную таблицу: одна копия на SHA-256, метаданные читаются без изображений
+
+-- В PostgreSQL @Lob byte[] хранится large object (OID), как было в avatar.data; в остальных базах - BLOB
+-- changeset kate:9 dbms:postgresql
+CREATE TABLE avatar_data (
+    hash VARCHAR(64) PRIMARY KEY REFERENCES avatar_content (hash),
+    data OID NOT NULL
+);
+
+-- changeset kate:17 dbms:!postgresql
+CREATE TABLE avatar_data (
+    hash VARCHAR(64) PRIMARY KEY REFERENCES avatar_content (hash),
+    data BLOB NOT NULL
+);
+
+-- Для одинакового содержимого остается один large object, копии дубликатов удаляются
+-- changeset kate:10 dbms:postgresql
+INSERT INTO avatar_data (hash, data)
+SELECT DISTINCT ON (content_hash) content_hash, data
+FROM avatar
+WHERE content_hash IS NOT NULL AND data IS NOT NULL
+ORDER BY content_hash, id;
+SELECT lo_unlink(data) FROM avatar WHERE data IS NOT NULL AND data NOT IN (SELECT data FROM avatar_data);
+
+-- changeset kate:11
+ALTER TABLE avatar DROP COLUMN data;
@@ -0,0 +1,8 @@
+-- liquibase formatted sql
+
+-- Номер версии строки для оптимистической блокировки (@Version): он же сильный ETag студента и факультета.
+-- Существующие строки начинают с версии 0
+
+-- changeset kate:16
+ALTER TABLE student ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE faculty ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
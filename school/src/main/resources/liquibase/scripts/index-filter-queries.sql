@@ -0,0 +1,23 @@
+-- liquibase formatted sql
+
+-- Индексы под фильтрацию и агрегацию на стороне базы данных (StudentService и FacultyService в режиме DATABASE)
+
+-- Фильтрация студентов по возрасту - WHERE age = ?
+-- changeset kate:3
+CREATE INDEX student_age_index ON student (age);
+
+-- Поиск имен по префиксу - LIKE 'А%' (обычный btree-индекс student_name_index не используется для LIKE при не-C локали)
+-- changeset kate:4 dbms:postgresql
+CREATE INDEX student_name_pattern_index ON student (name text_pattern_ops);
+
+-- Фильтрация факультетов по цвету - WHERE color = ? (составной индекс faculty_name_color_index начинается с name)
+-- changeset kate:5
+CREATE INDEX faculty_color_index ON faculty (color);
+
+-- Самое длинное название факультета - ORDER BY length(name) DESC LIMIT 1
+-- changeset kate:6 dbms:postgresql
+CREATE INDEX faculty_name_length_index ON faculty (length(name) DESC, id);
+
+-- Поиск имен по префиксу идет по индексу в памяти (StudentNameIndex), LIKE 'А%' к базе больше не выполняется
+-- changeset kate:18 dbms:postgresql
+DROP INDEX IF EXISTS student_name_pattern_index;
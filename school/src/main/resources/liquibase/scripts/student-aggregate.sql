@@ -0,0 +1,12 @@
+-- liquibase formatted sql
+
+-- Число студентов и сумма возрастов одной строкой: количество и средний возраст читаются по первичному ключу.
+-- Строку поддерживает приложение (StudentAggregateListener), расхождения исправляет периодическая сверка
+
+-- changeset kate:15
+CREATE TABLE student_aggregate (
+    id            INTEGER PRIMARY KEY,
+    student_count BIGINT NOT NULL,
+    age_sum       BIGINT NOT NULL
+);
+INSERT INTO student_aggregate (id, student_count, age_sum) SELECT 1, count(*), COALESCE(SUM(age), 0) FROM student;
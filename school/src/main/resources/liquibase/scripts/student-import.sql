@@ -0,0 +1,18 @@
+-- liquibase formatted sql
+
+-- Последовательности с шагом 50 для пакетной вставки студентов и факультетов: Hibernate получает сразу 50 id за один запрос
+
+-- changeset kate:12
+CREATE SEQUENCE student_seq START WITH 50 INCREMENT BY 50;
+CREATE SEQUENCE faculty_seq START WITH 50 INCREMENT BY 50;
+
+-- pooled-оптимизатор выдает id от (значение - 49) до значения, поэтому следующее значение - max(id) + 50
+-- changeset kate:13 dbms:postgresql
+SELECT setval('student_seq', COALESCE(MAX(id), 0) + 50, false) FROM student;
+SELECT setval('faculty_seq', COALESCE(MAX(id), 0) + 50, false) FROM faculty;
+
+-- Уникальное имя студента - ключ импорта с обновлением. Пока в таблице есть дубликаты, индекс не создается
+-- changeset kate:14
+-- preconditions onFail:CONTINUE
+-- precondition-sql-check expectedResult:0 SELECT count(*) FROM (SELECT name FROM student WHERE name IS NOT NULL GROUP BY name HAVING count(*) > 1) duplicates
+CREATE UNIQUE INDEX student_name_unique_index ON student (name);
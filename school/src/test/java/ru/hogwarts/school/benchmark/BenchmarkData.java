@@ -0,0 +1,62 @@
+package ru.hogwarts.school.benchmark;
+
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Синтетические данные для бенчмарков: генерация студентов/факультетов и заглушки репозиториев без базы данных
+ */
+final class BenchmarkData {
+
+    private static final String[] NAME_PREFIXES = {"Анна", "Алексей", "Борис", "Вера", "Harry", "Hermione", "Ron", "Артем"};
+    private static final String[] COLORS = {"red", "green", "blue", "yellow"};
+
+    private BenchmarkData() {
+    }
+
+    static List<Student> students(int rows) {
+        Random random = new Random(42);
+        List<Student> students = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String name = NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + i;
+            students.add(new Student((long) i + 1, name, 16 + random.nextInt(30)));
+        }
+        return students;
+    }
+
+    static List<Faculty> faculties(int rows) {
+        Random random = new Random(42);
+        List<Faculty> faculties = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String name = "Faculty" + "x".repeat(random.nextInt(20)) + i;
+            faculties.add(new Faculty((long) i + 1, name, COLORS[random.nextInt(COLORS.length)]));
+        }
+        return faculties;
+    }
+
+    /**
+     * Заглушка Spring Data репозитория, в которой реализован только findAll() - остальные методы бенчмарками не вызываются
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R repositoryWithFindAll(Class<R> repositoryType, List<?> rows) {
+        return (R) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> {
+                        if (args != null && args.length > 0) {
+                            throw new UnsupportedOperationException(method.toString());
+                        }
+                        yield rows;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> repositoryType.getSimpleName() + "Stub";
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+
+}
@@ -0,0 +1,110 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FilterMode;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение режимов фильтрации DATABASE, STREAM и MEMORY на встроенной базе H2, заполненной синтетическими данными
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+@State(Scope.Benchmark)
+public class FilterModeBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    @Param({"DATABASE", "STREAM", "MEMORY"})
+    private FilterMode filterMode;
+
+    private ConfigurableApplicationContext context;
+
+    private StudentService studentService;
+
+    private FacultyService facultyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "spring.datasource.driverClassName=org.h2.Driver",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.liquibase.enabled=false",
+                        "server.port=0")
+                .run();
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        FacultyRepository facultyRepository = context.getBean(FacultyRepository.class);
+        studentRepository.saveAll(BenchmarkData.students(rows).stream().peek(student -> student.setId(null)).toList());
+        facultyRepository.saveAll(BenchmarkData.faculties(rows / 100).stream().peek(faculty -> faculty.setId(null)).toList());
+
+        studentService = new StudentService(studentRepository, filterMode);
+        facultyService = new FacultyService(facultyRepository, studentRepository, filterMode);
+        studentService.loadSnapshot();
+        facultyService.loadCatalog();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void filterAge(Blackhole blackhole) {
+        blackhole.consume(studentService.filterAge(20));
+    }
+
+    @Benchmark
+    public void getStudentNamesStartingWithA(Blackhole blackhole) {
+        blackhole.consume(studentService.getStudentNamesStartingWithA());
+    }
+
+    @Benchmark
+    public void getAverageAgeAllStudents(Blackhole blackhole) {
+        blackhole.consume(studentService.getAverageAgeAllStudents());
+    }
+
+    @Benchmark
+    public void getAgeHistogram(Blackhole blackhole) {
+        blackhole.consume(studentService.getAgeHistogram(null));
+    }
+
+    @Benchmark
+    public void filterColor(Blackhole blackhole) {
+        blackhole.consume(facultyService.filterColor("red"));
+    }
+
+    @Benchmark
+    public void getLongestFacultyName(Blackhole blackhole) {
+        blackhole.consume(facultyService.getLongestFacultyName());
+    }
+
+}
@@ -0,0 +1,55 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hogwarts.school.service.InfoService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение четырех вариантов подсчета суммы из InfoService (исходный код, Long, параллельный стрим, арифметическая прогрессия)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class InfoServiceBenchmark {
+
+    private InfoService infoService;
+
+    @Setup
+    public void setUp() {
+        infoService = new InfoService();
+    }
+
+    @Benchmark
+    public int sumSource() {
+        return infoService.sumSource();
+    }
+
+    @Benchmark
+    public Long getSum() {
+        return infoService.getSum();
+    }
+
+    @Benchmark
+    public Long getSumParallelStream() {
+        return infoService.getSumParallelStream();
+    }
+
+    @Benchmark
+    public long getSumArithmeticProgression() {
+        return infoService.getSumArithmeticProgression();
+    }
+
+}
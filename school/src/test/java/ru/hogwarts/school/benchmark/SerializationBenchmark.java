@@ -0,0 +1,66 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson-сериализация сущностей в том виде, в каком они уходят в ответах контроллеров
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Student student;
+
+    private Faculty faculty;
+
+    private Avatar avatar;
+
+    @Setup
+    public void setUp() {
+        student = new Student(1L, "Гарри Поттер", 17);
+
+        faculty = new Faculty(1L, "Гриффиндор", "red");
+        faculty.setStudents(BenchmarkData.students(30));
+        student.setFaculty(faculty);
+
+        avatar = new Avatar(1L, "/avatars/1.png", 300 * 300 - 1, "image/png", student);
+    }
+
+    @Benchmark
+    public byte[] serializeStudent() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(student);
+    }
+
+    @Benchmark
+    public byte[] serializeFacultyWithStudents() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(faculty);
+    }
+
+    @Benchmark
+    public byte[] serializeAvatar() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(avatar);
+    }
+
+}
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FilterMode;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стрим-обработка в StudentService/FacultyService на синтетических коллекциях (репозиторий подменен заглушкой, база не участвует)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xmx2g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+@State(Scope.Benchmark)
+public class StreamPipelineBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int rows;
+
+    private StudentService studentService;
+
+    private FacultyService facultyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        studentService = new StudentService(
+                BenchmarkData.repositoryWithFindAll(StudentRepository.class, BenchmarkData.students(rows)),
+                FilterMode.STREAM);
+        facultyService = new FacultyService(
+                BenchmarkData.repositoryWithFindAll(FacultyRepository.class, BenchmarkData.faculties(rows)),
+                BenchmarkData.repositoryWithFindAll(StudentRepository.class, List.of()),
+                FilterMode.STREAM);
+    }
+
+    @Benchmark
+    public void getStudentNamesStartingWithA(Blackhole blackhole) {
+        blackhole.consume(studentService.getStudentNamesStartingWithA());
+    }
+
+    @Benchmark
+    public void getAverageAgeAllStudents(Blackhole blackhole) {
+        blackhole.consume(studentService.getAverageAgeAllStudents());
+    }
+
+    @Benchmark
+    public void getLongestFacultyName(Blackhole blackhole) {
+        blackhole.consume(facultyService.getLongestFacultyName());
+    }
+
+}
@@ -0,0 +1,152 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность и задержки (p99 в режиме SampleTime) HTTP-запросов при малом пуле потоков Tomcat <br/>
+ * и при рабочем (server.tomcat.threads.max). Клиентских потоков больше, чем потоков в малом пуле, <br/>
+ * чтобы он заполнялся, как при всплеске нагрузки; база ограничена пулом соединений так же, как в рабочей конфигурации
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(128)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlogback.configurationFile=logback-benchmark.xml"})
+@State(Scope.Benchmark)
+public class TomcatPoolBenchmark {
+
+    private static final int STUDENTS = 1_000;
+    private static final int AVATARS = 100;
+
+    @Param({"32", "200"})
+    private int tomcatThreads;
+
+    private ConfigurableApplicationContext context;
+
+    private Path avatarsDir;
+
+    private HttpClient client;
+
+    private String baseUrl;
+
+    private List<Long> studentIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsDir = Files.createTempDirectory("avatars-benchmark");
+        context = new SpringApplicationBuilder(SchoolApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "spring.datasource.driverClassName=org.h2.Driver",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.liquibase.enabled=false",
+                        "server.tomcat.threads.max=" + tomcatThreads,
+                        "spring.datasource.hikari.maximum-pool-size=20",
+                        "avatars.dir.path=" + avatarsDir,
+                        "server.port=0")
+                .run();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        studentIds = studentRepository.saveAll(BenchmarkData.students(STUDENTS).stream()
+                        .peek(student -> student.setId(null)).toList())
+                .stream().map(Student::getId).toList();
+        AvatarService avatarService = context.getBean(AvatarService.class);
+        Random random = new Random(42);
+        for (Long id : studentIds.subList(0, AVATARS)) {
+            byte[] content = new byte[16 * 1024 + random.nextInt(64 * 1024)];
+            random.nextBytes(content);
+            avatarService.uploadAvatar(id, new MockMultipartFile("avatar", "avatar.png", "image/png", content));
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(avatarsDir);
+    }
+
+    /**
+     * Чтение студента по id: JDBC и сериализация JSON
+     */
+    @Benchmark
+    public int getStudent() throws Exception {
+        Long id = studentIds.get(ThreadLocalRandom.current().nextInt(studentIds.size()));
+        return send("/student/" + id, HttpResponse.BodyHandlers.ofByteArray()).body().length;
+    }
+
+    /**
+     * Скачивание аватара из файла: поиск в базе и потоковая отдача файла
+     */
+    @Benchmark
+    public long downloadAvatar() throws Exception {
+        Long id = studentIds.get(ThreadLocalRandom.current().nextInt(AVATARS));
+        try (InputStream body = send("/avatar/" + id + "/avatar/fromFile", HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            return body.transferTo(OutputStreamSink.INSTANCE);
+        }
+    }
+
+    private <T> HttpResponse<T> send(String path, HttpResponse.BodyHandler<T> handler) throws Exception {
+        HttpResponse<T> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(), handler);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + path);
+        }
+        return response;
+    }
+
+    /**
+     * Приемник тела ответа без накопления в памяти
+     */
+    private static final class OutputStreamSink extends OutputStream {
+
+        static final OutputStreamSink INSTANCE = new OutputStreamSink();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+    }
+
+}
@@ -0,0 +1,303 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.repository.AvatarDataRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarCache;
+import ru.hogwarts.school.service.AvatarService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AvatarControllerRestTemplateTest {
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    static Path avatarsDir;
+
+    @DynamicPropertySource
+    static void avatarsDir(DynamicPropertyRegistry registry) {
+        registry.add("avatars.dir.path", avatarsDir::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AvatarService avatarService;
+
+    @Autowired
+    private AvatarCache avatarCache;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private AvatarContentRepository avatarContentRepository;
+
+    @Autowired
+    private AvatarDataRepository avatarDataRepository;
+
+    private Long studentId;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        cleanUp();
+        studentId = studentRepository.save(new Student(null, "Harry", 17)).getId();
+        avatarService.uploadAvatar(studentId, new MockMultipartFile("avatar", "avatar.png", "image/png",
+                CONTENT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        avatarRepository.deleteAll();
+        avatarDataRepository.deleteAll();
+        avatarContentRepository.deleteAll();
+        studentRepository.deleteAll();
+    }
+
+    private ResponseEntity<String> getFromFile(HttpHeaders headers) {
+        return restTemplate.exchange("http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromFile",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    @Test
+    @DisplayName("Файл отдается целиком с валидаторами кэша")
+    void downloadWholeFile() {
+        ResponseEntity<String> response = getFromFile(new HttpHeaders());
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(CONTENT);
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(CONTENT.length());
+        assertThat(response.getHeaders().getETag()).matches("\"[0-9a-f]{64}\"");
+        assertThat(response.getHeaders().getLastModified()).isPositive();
+        assertThat(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    }
+
+    @Test
+    @DisplayName("Условный запрос с тем же ETag возвращает 304 без тела")
+    void notModified() {
+        String eTag = getFromFile(new HttpHeaders()).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        ResponseEntity<String> response = getFromFile(headers);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getETag()).isEqualTo(eTag);
+    }
+
+    @Test
+    @DisplayName("Запрос диапазона возвращает часть файла")
+    void partialContent() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=5-9");
+
+        ResponseEntity<String> response = getFromFile(headers);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(response.getBody()).isEqualTo("56789");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 5-9/20");
+
+        headers.set(HttpHeaders.RANGE, "bytes=-4");
+        assertThat(getFromFile(headers).getBody()).isEqualTo("ghij");
+    }
+
+    @Test
+    @DisplayName("Диапазон за пределами файла возвращает 416")
+    void rangeNotSatisfiable() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=100-200");
+
+        ResponseEntity<String> response = getFromFile(headers);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */20");
+    }
+
+    @Test
+    @DisplayName("Устаревший If-Range отдает весь файл")
+    void staleIfRange() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=5-9");
+        headers.set(HttpHeaders.IF_RANGE, "\"outdated\"");
+
+        ResponseEntity<String> response = getFromFile(headers);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Слабый ETag и некорректная дата в If-Range не совпадают - отдается весь файл, а не 500")
+    void weakOrMalformedIfRange() {
+        String eTag = getFromFile(new HttpHeaders()).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=5-9");
+
+        for (String ifRange : List.of("W/" + eTag, "W/\"x\"", "garbage")) {
+            headers.set(HttpHeaders.IF_RANGE, ifRange);
+            ResponseEntity<String> response = getFromFile(headers);
+
+            assertThat(response.getStatusCode()).as(ifRange).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).as(ifRange).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    @DisplayName("Аватар из БД тоже поддерживает ETag")
+    void notModifiedFromDB() {
+        String url = "http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromDB";
+        String eTag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertThat(eTag).isNotNull();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    @DisplayName("Уменьшенная копия вписывается в запрошенный размер")
+    void downloadRendition() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "png", png);
+        avatarService.uploadAvatar(studentId, new MockMultipartFile("avatar", "avatar.png", "image/png", png.toByteArray()));
+
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromFile?size=48", byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_PNG);
+        assertThat(response.getHeaders().getETag()).endsWith("-48\"");
+        BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+        assertThat(rendition.getWidth()).isEqualTo(48);
+        assertThat(rendition.getHeight()).isEqualTo(32);
+    }
+
+    @Test
+    @DisplayName("Изображение больше avatars.renditions.max-pixels не декодируется, отдается оригинал")
+    void renditionOfHugeImageIsNotGenerated() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(5000, 4000, BufferedImage.TYPE_BYTE_BINARY), "png", png);
+        avatarService.uploadAvatar(studentId, new MockMultipartFile("avatar", "avatar.png", "image/png", png.toByteArray()));
+
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromFile?size=48", byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).doesNotEndWith("-48\"");
+        assertThat(response.getBody()).isEqualTo(png.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Неподдерживаемый размер копии - 400")
+    void unsupportedRenditionSize() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromFile?size=50", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    @DisplayName("Слишком большой файл отклоняется")
+    void uploadTooBigFile() throws Exception {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new ByteArrayResource(new byte[300 * 300]) {
+            @Override
+            public String getFilename() {
+                return "avatar.png";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "http://localhost:" + port + "/avatar/" + studentId + "/avatar", new HttpEntity<>(body, headers), String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("File is too big");
+        assertThat(getFromFile(new HttpHeaders()).getBody()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Повторное скачивание из БД обслуживается кэшем, загрузка сбрасывает кэш")
+    void fromDBIsCached() throws Exception {
+        String url = "http://localhost:" + port + "/avatar/" + studentId + "/avatar/fromDB";
+        long hits = avatarCache.stats().hits();
+
+        assertThat(restTemplate.getForObject(url, String.class)).isEqualTo(CONTENT);
+        assertThat(restTemplate.getForObject(url, String.class)).isEqualTo(CONTENT);
+        assertThat(avatarCache.stats().hits()).isEqualTo(hits + 1);
+
+        avatarService.uploadAvatar(studentId, new MockMultipartFile("avatar", "avatar.png", "image/png",
+                "new content".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(restTemplate.getForObject(url, String.class)).isEqualTo("new content");
+    }
+
+    @Test
+    @DisplayName("Список аватаров по курсору")
+    void getAvatarsByCursor() {
+        ResponseEntity<String> firstPage = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar?cursor=&limit=1", String.class);
+        ResponseEntity<String> pageByNumber = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar?pageNumber=1&pageSize=1", String.class);
+
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(firstPage.getBody()).contains("\"items\"").contains("\"next\":null")
+                .contains("\"studentId\":" + studentId).doesNotContain("\"student\":");
+        assertThat(pageByNumber.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(pageByNumber.getBody()).startsWith("[");
+    }
+
+    @Test
+    @DisplayName("Аватар несуществующего студента - 404")
+    void avatarNotFound() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/avatar/" + (studentId + 1) + "/avatar/fromFile", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+}
@@ -9,10 +9,15 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.hogwarts.school.dto.FacultyDetails;
+import ru.hogwarts.school.dto.MergePatch;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
@@ -111,7 +116,7 @@ class FacultyControllerRestTemplateTest {
         final Faculty actual = result.getBody();
         assertThat(actual).isNotNull();
         assertThat(actual.getId()).isNotNull();
-        assertThat(actual).usingRecursiveComparison().ignoringFields("id").isEqualTo(expected);
+        assertThat(actual).usingRecursiveComparison().ignoringFields("id", "version").isEqualTo(expected);
     }
 
     @Test
@@ -241,4 +246,78 @@ class FacultyControllerRestTemplateTest {
         assertEquals(expected, result.getBody());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Факультет без студентов в ответе по умолчанию и со страницей студентов по expand=students")
+    void getFacultyWithExpandedStudents() throws Exception {
+        Faculty faculty = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        Student harry = studentRepository.save(getTestStudentWithFaculty("Harry", 17, faculty));
+        Student ron = studentRepository.save(getTestStudentWithFaculty("Ron", 17, faculty));
+        Student hermione = studentRepository.save(getTestStudentWithFaculty("Hermione", 18, faculty));
+
+        ResponseEntity<String> lean = restTemplate.getForEntity(getURL("/" + faculty.getId()), String.class);
+        ResponseEntity<FacultyDetails> firstPage = restTemplate.getForEntity(
+                getURL("/" + faculty.getId() + "?expand=students&size=2"), FacultyDetails.class);
+        ResponseEntity<FacultyDetails> secondPage = restTemplate.getForEntity(
+                getURL("/" + faculty.getId() + "?expand=students&size=2&page=1"), FacultyDetails.class);
+
+        assertEquals(HttpStatus.OK, lean.getStatusCode());
+        assertThat(lean.getBody()).doesNotContain("students");
+        assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+        assertThat(firstPage.getBody().name()).isEqualTo("Gryffindor");
+        assertThat(firstPage.getBody().students().items()).containsExactly(StudentView.of(harry), StudentView.of(ron));
+        assertThat(firstPage.getBody().students().total()).isEqualTo(3);
+        assertThat(secondPage.getBody().students().items()).containsExactly(StudentView.of(hermione));
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restTemplate.getForEntity(getURL("/" + faculty.getId() + "?expand=avatars"), String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND,
+                restTemplate.getForEntity(getURL("/" + (faculty.getId() + 1) + "?expand=students"), String.class).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Условные запросы к факультету по ETag версии")
+    void conditionalRequestsByVersion() throws Exception {
+        Faculty faculty = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        String url = getURL("/" + faculty.getId());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"0\"");
+
+        ResponseEntity<Faculty> notModified = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Faculty.class);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+
+        HttpHeaders ifMatch = new HttpHeaders();
+        ifMatch.setIfMatch("\"0\"");
+        ResponseEntity<Faculty> updated = restTemplate.exchange(getURL(""), HttpMethod.PUT,
+                new HttpEntity<>(new Faculty(faculty.getId(), "Gryffindor", "scarlet"), ifMatch), Faculty.class);
+        ResponseEntity<Faculty> stale = restTemplate.exchange(getURL(""), HttpMethod.PUT,
+                new HttpEntity<>(new Faculty(faculty.getId(), "Gryffindor", "gold"), ifMatch), Faculty.class);
+        ResponseEntity<Faculty> modified = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Faculty.class);
+
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertEquals(HttpStatus.PRECONDITION_FAILED, stale.getStatusCode());
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertThat(modified.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(modified.getBody().getColor()).isEqualTo("scarlet");
+    }
+
+    @Test
+    @DisplayName("PATCH факультета меняет только переданные поля, поиск по цвету следует за ним")
+    void patchFaculty() throws Exception {
+        Faculty faculty = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(MergePatch.MEDIA_TYPE));
+
+        ResponseEntity<String> patched = restTemplate.exchange(getURL("/" + faculty.getId()), HttpMethod.PATCH,
+                new HttpEntity<>("{\"color\": \"scarlet\"}", headers), String.class);
+        ResponseEntity<String> missing = restTemplate.exchange(getURL("/" + (faculty.getId() + 1)), HttpMethod.PATCH,
+                new HttpEntity<>("{\"color\": \"gold\"}", headers), String.class);
+
+        assertEquals(HttpStatus.NO_CONTENT, patched.getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertThat(restTemplate.getForObject(getURL("/" + faculty.getId()), Faculty.class))
+                .extracting(Faculty::getName, Faculty::getColor).containsExactly("Gryffindor", "scarlet");
+        assertThat(restTemplate.getForObject(getURL("/filterColor?color=scarlet"), String.class)).contains("Gryffindor");
+        assertThat(restTemplate.getForObject(getURL("/filterColor?color=red"), String.class)).isEqualTo("[]");
+    }
+
+}
@@ -6,13 +6,20 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.FacultyView;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.ExportService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.PatchService;
 import ru.hogwarts.school.service.StudentService;
 
 import java.util.Arrays;
@@ -29,6 +36,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,6 +52,12 @@ class FacultyControllerWebMvcTest {
     @MockitoBean
     private StudentService studentService;
 
+    @MockitoBean
+    private ExportService exportService;
+
+    @MockitoBean
+    private PatchService patchService;
+
     private Faculty getTestFaculty(String name, String color) {
         Faculty test = new Faculty();
         test.setName(name);
@@ -145,7 +159,7 @@ class FacultyControllerWebMvcTest {
         Faculty testFaculty = getTestFaculty(10L, "TestFaculty", "TestColor");
         String colorFilter = "TestColor";
 
-        Collection<Faculty> facultyByColor = Collections.singletonList(testFaculty);
+        Collection<FacultyView> facultyByColor = Collections.singletonList(FacultyView.of(testFaculty));
 
         when(facultyService.filterColor(colorFilter)).thenReturn(facultyByColor);
 
@@ -169,8 +183,8 @@ class FacultyControllerWebMvcTest {
         String findName = "TestFaculty1";
         String findColor = "RandomColor2";
 
-        Collection<Faculty> findByName = Collections.singletonList(testFaculty1);
-        Collection<Faculty> findByColor = Collections.singletonList(testFaculty2);
+        Collection<FacultyView> findByName = Collections.singletonList(FacultyView.of(testFaculty1));
+        Collection<FacultyView> findByColor = Collections.singletonList(FacultyView.of(testFaculty2));
 
         when(facultyService.findByNameOrColor(anyString())).thenAnswer(invocation -> {
             String param = invocation.getArgument(0, String.class);
@@ -214,13 +228,26 @@ class FacultyControllerWebMvcTest {
         Student testStudent2 = getTestStudent(12L, "TestStudent2", 26);
         long facultyId = 1L;
 
-        Collection<Student> studentsByFaculty = Arrays.asList(testStudent1, testStudent2);
+        List<StudentView> studentsByFaculty = Arrays.asList(StudentView.of(testStudent1), StudentView.of(testStudent2));
+
+        when(facultyService.getStudentsByFaculty(facultyId, 0, 1))
+                .thenReturn(new PageImpl<>(studentsByFaculty.subList(0, 1), PageRequest.of(0, 1), 2));
+        when(facultyService.getStudentsByFaculty(facultyId, 0, 100))
+                .thenReturn(new PageImpl<>(studentsByFaculty, PageRequest.of(0, 100), 2));
 
-        when(facultyService.getStudentsByFaculty(facultyId)).thenReturn(studentsByFaculty);
+        mockMvc.perform(get("/faculty/getStudentsFaculty/{id}", facultyId)
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/faculty/getStudentsFaculty/1?page=1&size=1>; rel=\"next\""))
+                .andExpect(jsonPath("$.length()").value(1));
 
         mockMvc.perform(get("/faculty/getStudentsFaculty/{id}", facultyId)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
                 .andExpect(jsonPath("$[0].id").value(11L))
                 .andExpect(jsonPath("$[0].name").value("TestStudent1"))
                 .andExpect(jsonPath("$[0].age").value(24))
@@ -229,4 +256,12 @@ class FacultyControllerWebMvcTest {
                 .andExpect(jsonPath("$[1].age").value(26));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Студенты неизвестного факультета - 404")
+    void getStudentsByUnknownFaculty() throws Exception {
+        mockMvc.perform(get("/faculty/getStudentsFaculty/{id}", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+}
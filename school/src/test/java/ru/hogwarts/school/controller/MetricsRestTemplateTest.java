@@ -0,0 +1,54 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
+class MetricsRestTemplateTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Test
+    @DisplayName("Эндпоинты, сервисы, репозитории, пул соединений и аватары видны в формате Prometheus")
+    void prometheusScrape() {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        restTemplate.getForObject("http://localhost:" + port + "/student/" + harry.getId(), String.class);
+        restTemplate.getForObject("http://localhost:" + port + "/student/" + (harry.getId() + 1), String.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/student/{id}\"")
+                .contains("school_service_seconds_bucket{")
+                .contains("class=\"ru.hogwarts.school.service.StudentService\"")
+                .contains("method=\"getStudentId\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("repository=\"StudentRepository\"")
+                .contains("hikaricp_connections_active")
+                .contains("school_avatar_bytes_total{")
+                .contains("school_avatar_cache_requests_total{");
+        studentRepository.deleteAll();
+    }
+
+}
@@ -0,0 +1,86 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import ru.hogwarts.school.dto.SearchHit;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SearchControllerRestTemplateTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    void beforeEach() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    private List<SearchHit> search(String query) {
+        return Arrays.asList(restTemplate.getForObject("http://localhost:" + port + "/search?q=" + query, SearchHit[].class));
+    }
+
+    @Test
+    @DisplayName("Поиск с опечаткой находит студента, лучшее совпадение первым")
+    void searchStudentWithTypo() {
+        Student hermione = studentRepository.save(new Student(null, "Hermione Granger", 17));
+        studentRepository.save(new Student(null, "Harry Potter", 17));
+
+        List<SearchHit> hits = search("Hermoine");
+
+        assertThat(hits).isNotEmpty();
+        assertThat(hits.get(0).type()).isEqualTo("student");
+        assertThat(hits.get(0).id()).isEqualTo(hermione.getId());
+        assertThat(hits).extracting(SearchHit::text).doesNotContain("Harry Potter");
+    }
+
+    @Test
+    @DisplayName("Факультеты находятся по названию и по цвету, индекс следует за записью")
+    void searchFacultiesFollowsWrites() {
+        Faculty gryffindor = facultyRepository.save(new Faculty(null, "Gryffindor", "red"));
+
+        assertThat(search("grifindor")).extracting(SearchHit::type, SearchHit::id, SearchHit::field)
+                .containsExactly(tuple("faculty", gryffindor.getId(), "name"));
+        assertThat(search("red")).extracting(SearchHit::field).containsExactly("color");
+
+        gryffindor.setColor("scarlet");
+        gryffindor = facultyRepository.save(gryffindor);
+        assertThat(search("red")).isEmpty();
+
+        facultyRepository.delete(gryffindor);
+        assertThat(search("gryffindor")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Пустой запрос - 400")
+    void searchBlankQuery() {
+        assertThat(restTemplate.getForEntity("http://localhost:" + port + "/search?q=", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+}
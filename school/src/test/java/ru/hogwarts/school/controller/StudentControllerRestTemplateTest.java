@@ -16,17 +16,34 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.hogwarts.school.dto.CacheRegionStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.MergePatch;
+import ru.hogwarts.school.dto.StudentImportRow;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentAggregateRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.CacheStatisticsService;
+import ru.hogwarts.school.service.SearchService;
+import ru.hogwarts.school.service.StudentAggregateService;
+import ru.hogwarts.school.service.StudentService;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Stream;
@@ -34,6 +51,8 @@ import java.util.stream.Stream;
 import static org.apache.commons.lang3.RandomUtils.insecure;
 import static org.apache.commons.lang3.RandomUtils.nextInt;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -53,6 +72,24 @@ class StudentControllerRestTemplateTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+
+    @Autowired
+    private StudentAggregateService studentAggregateService;
+
+    @Autowired
+    private StudentAggregateRepository studentAggregateRepository;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void beforeEach() {
         studentRepository.deleteAll();
@@ -121,7 +158,21 @@ class StudentControllerRestTemplateTest {
         final Student actual = result.getBody();
         assertThat(actual).isNotNull();
         assertThat(actual.getId()).isNotNull();
-        assertThat(actual).usingRecursiveComparison().ignoringFields("id").isEqualTo(expected);
+        assertThat(actual).usingRecursiveComparison().ignoringFields("id", "version").isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Студент с занятым именем - 409")
+    void createStudentWithDuplicateName() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        Student ron = restTemplate.postForObject(getURL(""), getTestStudent("Ron", 17), Student.class);
+
+        ResponseEntity<Student> created = restTemplate.postForEntity(getURL(""), getTestStudent("Harry", 18), Student.class);
+        ron.setName(harry.getName());
+        ResponseEntity<Student> updated = restTemplate.exchange(getURL(""), HttpMethod.PUT, new HttpEntity<>(ron), Student.class);
+
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
     }
 
     @Test
@@ -256,4 +307,377 @@ class StudentControllerRestTemplateTest {
         assertEquals(testFaculty, result.getBody());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Постраничный просмотр студентов по курсору")
+    void getStudentsByCursor() throws Exception {
+        List<Student> expected = addAndGetStudentList();
+        List<Student> actual = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+
+        do {
+            ResponseEntity<CursorPage<Student>> result = restTemplate.exchange(
+                    getURL("?limit=2&cursor=" + cursor),
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<CursorPage<Student>>() {
+                    }
+            );
+            assertEquals(HttpStatus.OK, result.getStatusCode());
+            assertThat(result.getBody().items()).hasSizeLessThanOrEqualTo(2);
+            actual.addAll(result.getBody().items());
+            cursor = result.getBody().next();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+        assertEquals((expected.size() + 1) / 2, pages);
+    }
+
+    @Test
+    @DisplayName("Поврежденный курсор")
+    void getStudentsByInvalidCursor() throws Exception {
+        ResponseEntity<String> result = restTemplate.getForEntity(getURL("?cursor=not-a-cursor"), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Импорт студентов из JSON: ошибочные строки не откатывают остальные")
+    void importStudentsJson() throws Exception {
+        Faculty faculty = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        studentRepository.save(getTestStudent("Harry", 11));
+        List<StudentImportRow> rows = List.of(
+                new StudentImportRow("Harry", 17, faculty.getId()),
+                new StudentImportRow("Ron", 17, faculty.getId()),
+                new StudentImportRow("", 17, null),
+                new StudentImportRow("Hermione", 17, Long.MAX_VALUE),
+                new StudentImportRow("Neville", 16, null));
+
+        ResponseEntity<ImportReport> result = restTemplate.postForEntity(getURL("/import"), rows, ImportReport.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        ImportReport report = result.getBody();
+        assertThat(report.total()).isEqualTo(5);
+        assertThat(report.created()).isEqualTo(2);
+        assertThat(report.updated()).isEqualTo(1);
+        assertThat(report.errors()).extracting(ImportReport.RowError::row).containsExactly(3, 4);
+        assertThat(studentRepository.findAll())
+                .extracting(Student::getName, Student::getAge)
+                .containsExactlyInAnyOrder(tuple("Harry", 17), tuple("Ron", 17), tuple("Neville", 16));
+    }
+
+    @Test
+    @DisplayName("Импорт студентов из CSV")
+    void importStudentsCsv() throws Exception {
+        String csv = """
+                name,age,facultyId
+                Harry,17,
+                "Weasley, Ron",17
+                Draco,old
+                """;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+
+        ResponseEntity<ImportReport> result = restTemplate.postForEntity(getURL("/import"),
+                new HttpEntity<>(csv, headers), ImportReport.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertThat(result.getBody().created()).isEqualTo(2);
+        assertThat(result.getBody().errors()).extracting(ImportReport.RowError::row).containsExactly(3);
+        assertThat(studentRepository.findAll()).extracting(Student::getName).containsExactlyInAnyOrder("Harry", "Weasley, Ron");
+    }
+
+    @Test
+    @DisplayName("Выгрузка студентов в NDJSON и CSV")
+    void exportStudents() throws Exception {
+        Faculty faculty = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        Student harry = studentRepository.save(getTestStudentWithFaculty("Harry", 17, faculty));
+        Student ron = studentRepository.save(getTestStudent("Weasley, Ron", 17));
+
+        ResponseEntity<String> ndjson = restTemplate.getForEntity(getURL("/export"), String.class);
+        ResponseEntity<String> csv = restTemplate.getForEntity(getURL("/export?format=csv"), String.class);
+
+        assertEquals(HttpStatus.OK, ndjson.getStatusCode());
+        assertThat(ndjson.getHeaders().getContentType().toString()).isEqualTo("application/x-ndjson");
+        assertThat(ndjson.getBody().lines()).containsExactly(
+                "{\"id\":" + harry.getId() + ",\"name\":\"Harry\",\"age\":17,\"facultyId\":" + faculty.getId() + "}",
+                "{\"id\":" + ron.getId() + ",\"name\":\"Weasley, Ron\",\"age\":17,\"facultyId\":null}");
+        assertThat(csv.getBody().lines()).containsExactly(
+                "id,name,age,facultyId",
+                harry.getId() + ",Harry,17," + faculty.getId(),
+                ron.getId() + ",\"Weasley, Ron\",17,");
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(getURL("/export?format=xml"), String.class).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Повторное чтение студента по id обслуживается кэшем второго уровня, обновление видно сразу")
+    void getStudentIdIsCached() throws Exception {
+        Student expected = studentRepository.save(getTestStudent("Harry", 17));
+        String url = getURL("/") + expected.getId();
+        restTemplate.getForObject(url, Student.class);
+        long hits = getStudentRegionHits();
+
+        assertThat(restTemplate.getForObject(url, Student.class).getName()).isEqualTo("Harry");
+        assertThat(getStudentRegionHits()).isGreaterThan(hits);
+
+        restTemplate.put(getURL(""), new Student(expected.getId(), "Harry Potter", 18));
+
+        assertThat(restTemplate.getForObject(url, Student.class))
+                .extracting(Student::getName, Student::getAge)
+                .containsExactly("Harry Potter", 18);
+    }
+
+    private long getStudentRegionHits() {
+        return cacheStatisticsService.getRegionStats().stream()
+                .filter(region -> region.region().equals(Student.class.getName()))
+                .mapToLong(CacheRegionStats::hits)
+                .sum();
+    }
+
+    @Test
+    @DisplayName("Сводная статистика студентов одним запросом")
+    void getStudentStats() throws Exception {
+        List<Student> students = Stream.of(17, 18, 19, 20, 21, 23)
+                .map(age -> studentRepository.save(getTestStudent("Student" + age, age)))
+                .toList();
+
+        ResponseEntity<StudentStats> result = restTemplate.getForEntity(getURL("/stats"), StudentStats.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertThat(result.getBody().count()).isEqualTo(6);
+        assertThat(result.getBody().averageAge()).isEqualTo(19.666, within(0.001));
+        assertThat(result.getBody().lastFive())
+                .extracting(StudentView::id)
+                .containsExactlyElementsOf(students.stream().map(Student::getId).sorted(Comparator.reverseOrder()).limit(5).toList());
+    }
+
+    @Test
+    @DisplayName("Без студентов средний возраст в сводке - null, как в /getAverageAgeStudents")
+    void getStudentStatsWithoutStudents() throws Exception {
+        ResponseEntity<StudentStats> result = restTemplate.getForEntity(getURL("/stats"), StudentStats.class);
+
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertThat(result.getBody().count()).isZero();
+        assertThat(result.getBody().averageAge()).isNull();
+        assertThat(result.getBody().lastFive()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Без строки агрегата (до сверки) сводка отвечает 200 с нулевым числом студентов")
+    void getStudentStatsWithoutAggregate() throws Exception {
+        studentAggregateRepository.deleteAll();
+        try {
+            ResponseEntity<StudentStats> result = restTemplate.getForEntity(getURL("/stats"), StudentStats.class);
+
+            assertEquals(HttpStatus.OK, result.getStatusCode());
+            assertThat(result.getBody().count()).isZero();
+            assertThat(result.getBody().averageAge()).isNull();
+        } finally {
+            studentAggregateService.reconcile();
+        }
+    }
+
+    @Test
+    @DisplayName("Количество и средний возраст следуют за созданием, изменением и удалением студентов")
+    void countAndAverageFollowWrites() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        Student ron = restTemplate.postForObject(getURL(""), getTestStudent("Ron", 19), Student.class);
+
+        assertEquals(2, restTemplate.getForObject(getURL("/getCountAllStudents"), Integer.class));
+        assertEquals(18.0, restTemplate.getForObject(getURL("/getAverageAgeStudents"), Double.class));
+
+        restTemplate.put(getURL(""), new Student(harry.getId(), "Harry", 21));
+        restTemplate.delete(getURL("/") + ron.getId());
+
+        assertEquals(1, restTemplate.getForObject(getURL("/getCountAllStudents"), Integer.class));
+        assertEquals(21.0, restTemplate.getForObject(getURL("/getAverageAgeStudents"), Double.class));
+
+        restTemplate.delete(getURL("/") + harry.getId());
+
+        assertEquals(0, restTemplate.getForObject(getURL("/getCountAllStudents"), Integer.class));
+        assertThat(restTemplate.getForObject(getURL("/getAverageAgeStudents"), Double.class)).isNull();
+    }
+
+    @Test
+    @DisplayName("Гистограмма возрастов студентов")
+    void getAgeHistogram() throws Exception {
+        restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        restTemplate.postForObject(getURL(""), getTestStudent("Ron", 17), Student.class);
+        restTemplate.postForObject(getURL(""), getTestStudent("Percy", 21), Student.class);
+
+        assertThat(restTemplate.getForObject(getURL("/ageHistogram"), String.class)).isEqualTo("{\"17\":2,\"21\":1}");
+    }
+
+    @Test
+    @DisplayName("Поиск имен студентов по префиксу следует за записью")
+    void findNamesStartingWith() throws Exception {
+        restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        Student hermione = restTemplate.postForObject(getURL(""), getTestStudent("Hermione", 17), Student.class);
+        restTemplate.postForObject(getURL(""), getTestStudent("Ron", 17), Student.class);
+
+        assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=h"), String.class))
+                .isEqualTo("[\"Harry\",\"Hermione\"]");
+        assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=H&limit=1"), String.class))
+                .isEqualTo("[\"Harry\"]");
+
+        restTemplate.put(getURL(""), new Student(hermione.getId(), "Granger", 17));
+
+        assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=h"), String.class)).isEqualTo("[\"Harry\"]");
+        assertThat(restTemplate.getForEntity(getURL("/namesStartingWith?prefix="), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    @DisplayName("Запись в обход Hibernate попадает в индекс имен и поиск после сверки по расписанию")
+    void reloadPicksUpWritesListenersMissed() {
+        long id = 1_000_000L;
+        jdbcTemplate.update("INSERT INTO student (id, name, age, version) VALUES (?, ?, ?, 0)", id, "Neville", 17);
+        try {
+            assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=nev"), String.class)).isEqualTo("[]");
+
+            studentService.reloadSnapshot();
+            searchService.reload();
+
+            assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=nev"), String.class))
+                    .isEqualTo("[\"Neville\"]");
+            assertThat(restTemplate.getForObject("http://localhost:" + port + "/search?q=Nevile", String.class))
+                    .contains("\"id\":" + id);
+        } finally {
+            jdbcTemplate.update("DELETE FROM student WHERE id = ?", id);
+            studentService.reloadSnapshot();
+            searchService.reload();
+        }
+    }
+
+    @Test
+    @DisplayName("Студент отдается с ETag по версии, совпавший If-None-Match - 304 без тела")
+    void getStudentIdNotModified() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        String url = getURL("/") + harry.getId();
+        String eTag = restTemplate.getForEntity(url, Student.class).getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+
+        ResponseEntity<Student> notModified = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Student.class);
+
+        assertThat(eTag).isEqualTo("\"0\"");
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertThat(notModified.getBody()).isNull();
+        assertThat(notModified.getHeaders().getETag()).isEqualTo(eTag);
+
+        restTemplate.put(getURL(""), new Student(harry.getId(), "Harry Potter", 18));
+        ResponseEntity<Student> modified = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), Student.class);
+
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertThat(modified.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertThat(modified.getBody().getName()).isEqualTo("Harry Potter");
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange(getURL("/") + (harry.getId() + 1), HttpMethod.GET,
+                new HttpEntity<>(headers), Student.class).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("POST с id создает нового студента, PUT несуществующего студента с версией - 404")
+    void createWithIdAndUpdateMissingWithVersion() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        Student withId = new Student(harry.getId(), "Ron", 17);
+
+        ResponseEntity<Student> created = restTemplate.postForEntity(getURL(""), withId, Student.class);
+        Student missing = new Student(harry.getId() + 1000, "Hermione", 18);
+        missing.setVersion(0L);
+        ResponseEntity<Student> updated = restTemplate.exchange(getURL(""), HttpMethod.PUT, new HttpEntity<>(missing), Student.class);
+
+        assertEquals(HttpStatus.OK, created.getStatusCode());
+        assertThat(created.getBody().getId()).isNotEqualTo(harry.getId());
+        assertThat(studentRepository.findById(harry.getId())).get().extracting(Student::getName).isEqualTo("Harry");
+        assertEquals(HttpStatus.NOT_FOUND, updated.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Обновление с устаревшей версией отклоняется: If-Match - 412, версия в теле - 409")
+    void updateStudentWithStaleVersion() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfMatch("\"0\"");
+
+        ResponseEntity<Student> updated = restTemplate.exchange(getURL(""), HttpMethod.PUT,
+                new HttpEntity<>(new Student(harry.getId(), "Harry Potter", 18), headers), Student.class);
+        ResponseEntity<Student> staleIfMatch = restTemplate.exchange(getURL(""), HttpMethod.PUT,
+                new HttpEntity<>(new Student(harry.getId(), "Harry", 19), headers), Student.class);
+        ResponseEntity<Student> staleBody = restTemplate.exchange(getURL(""), HttpMethod.PUT,
+                new HttpEntity<>(harry), Student.class);
+
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertThat(updated.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertEquals(HttpStatus.PRECONDITION_FAILED, staleIfMatch.getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, staleBody.getStatusCode());
+        assertThat(studentRepository.findById(harry.getId()).orElseThrow())
+                .extracting(Student::getName, Student::getAge, Student::getVersion)
+                .containsExactly("Harry Potter", 18, 1L);
+    }
+
+    private ResponseEntity<String> patchStudent(Long id, String json, HttpHeaders headers) {
+        headers.setContentType(MediaType.parseMediaType(MergePatch.MEDIA_TYPE));
+        return restTemplate.exchange(getURL("/") + id, HttpMethod.PATCH, new HttpEntity<>(json, headers), String.class);
+    }
+
+    @Test
+    @DisplayName("PATCH меняет только переданные поля, индексы следуют за ним, сумму возрастов поправляет сверка")
+    void patchStudent() throws Exception {
+        Faculty gryffindor = facultyRepository.save(getTestFaculty("Gryffindor", "red"));
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        String url = getURL("/") + harry.getId();
+        restTemplate.getForObject(url, Student.class);
+
+        ResponseEntity<String> patched = patchStudent(harry.getId(), "{\"age\": 18}", new HttpHeaders());
+
+        assertEquals(HttpStatus.NO_CONTENT, patched.getStatusCode());
+        ResponseEntity<Student> reloaded = restTemplate.getForEntity(url, Student.class);
+        assertThat(reloaded.getBody()).extracting(Student::getName, Student::getAge).containsExactly("Harry", 18);
+        assertThat(reloaded.getHeaders().getETag()).isEqualTo("\"1\"");
+        studentAggregateService.reconcile();
+        assertEquals(18.0, restTemplate.getForObject(getURL("/getAverageAgeStudents"), Double.class));
+
+        patchStudent(harry.getId(), "{\"name\": \"Potter\", \"facultyId\": " + gryffindor.getId() + "}", new HttpHeaders());
+
+        assertThat(restTemplate.getForObject(url, Student.class).getAge()).isEqualTo(18);
+        assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=p"), String.class)).isEqualTo("[\"Potter\"]");
+        assertThat(restTemplate.getForObject(getURL("/namesStartingWith?prefix=h"), String.class)).isEqualTo("[]");
+        assertEquals(gryffindor, restTemplate.getForObject(getURL("/getFacultyStudent/") + harry.getId(), Faculty.class));
+
+        assertEquals(HttpStatus.NOT_FOUND, patchStudent(harry.getId() + 1, "{\"age\": 20}", new HttpHeaders()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, patchStudent(harry.getId(), "{\"age\": null}", new HttpHeaders()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, patchStudent(harry.getId(), "{\"version\": 7}", new HttpHeaders()).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, patchStudent(harry.getId(), "{\"facultyId\": " + (gryffindor.getId() + 1) + "}",
+                new HttpHeaders()).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("PATCH на занятое имя - 409 Conflict, как у POST и PUT")
+    void patchStudentWithDuplicateName() throws Exception {
+        restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        Student ron = restTemplate.postForObject(getURL(""), getTestStudent("Ron", 19), Student.class);
+
+        assertEquals(HttpStatus.CONFLICT, patchStudent(ron.getId(), "{\"name\": \"Harry\"}", new HttpHeaders()).getStatusCode());
+        assertThat(studentRepository.findById(ron.getId()).orElseThrow().getName()).isEqualTo("Ron");
+    }
+
+    @Test
+    @DisplayName("PATCH с If-Match: устаревшая версия - 412, в ответе на успешный - ETag новой версии")
+    void patchStudentIfMatch() throws Exception {
+        Student harry = restTemplate.postForObject(getURL(""), getTestStudent("Harry", 17), Student.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfMatch("\"0\"");
+
+        ResponseEntity<String> patched = patchStudent(harry.getId(), "{\"age\": 18}", headers);
+        ResponseEntity<String> stale = patchStudent(harry.getId(), "{\"age\": 19}", headers);
+
+        assertEquals(HttpStatus.NO_CONTENT, patched.getStatusCode());
+        assertThat(patched.getHeaders().getETag()).isEqualTo("\"1\"");
+        assertEquals(HttpStatus.PRECONDITION_FAILED, stale.getStatusCode());
+        assertThat(studentRepository.findById(harry.getId()).orElseThrow().getAge()).isEqualTo(18);
+        studentAggregateService.reconcile();
+        assertEquals(18.0, restTemplate.getForObject(getURL("/getAverageAgeStudents"), Double.class));
+    }
+
+}
@@ -9,10 +9,15 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.StudentView;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.ExportService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.PatchService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.StudentStatsService;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +43,18 @@ class StudentControllerWebMvcTest {
     @MockitoBean
     private StudentService studentService;
 
+    @MockitoBean
+    private ExportService exportService;
+
+    @MockitoBean
+    private StudentImportService studentImportService;
+
+    @MockitoBean
+    private StudentStatsService studentStatsService;
+
+    @MockitoBean
+    private PatchService patchService;
+
     private Student getTestStudent(String name, int age) {
         Student test = new Student();
         test.setName(name);
@@ -161,7 +178,7 @@ class StudentControllerWebMvcTest {
         Student testStudent = getTestStudent(15L, "TestStudent", 23);
         int ageFilter = 23;
 
-        Collection<Student> studentsByAge = Collections.singletonList(testStudent);
+        Collection<StudentView> studentsByAge = Collections.singletonList(StudentView.of(testStudent));
 
         when(studentService.filterAge(ageFilter)).thenReturn(studentsByAge);
 
@@ -181,7 +198,7 @@ class StudentControllerWebMvcTest {
         int minAge = 21;
         int maxAge = 25;
 
-        Collection<Student> studentsByAge = Collections.singletonList(testStudent);
+        Collection<StudentView> studentsByAge = Collections.singletonList(StudentView.of(testStudent));
 
         when(studentService.findByAgeBetween(minAge, maxAge)).thenReturn(studentsByAge);
 
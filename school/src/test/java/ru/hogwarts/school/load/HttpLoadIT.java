@@ -0,0 +1,282 @@
+package ru.hogwarts.school.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.repository.AvatarDataRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест HTTP API, запускается Failsafe в mvn verify; параметры и пороги - в LoadProfile. <br/>
+ * Открытая модель: запросы уходят по расписанию с частотой load.rate независимо от того, ответил ли сервер на предыдущие, <br/>
+ * а задержка считается от запланированного момента отправки - так очередь на сервере попадает в задержку, <br/>
+ * а не снижает нагрузку (без coordinated omission). Отчет и распределения HdrHistogram - в target/load-test
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "logging.level.ru.hogwarts.school.service=WARN"})
+class HttpLoadIT {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpLoadIT.class);
+
+    private static final Path REPORT_DIR = Path.of("target", "load-test");
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final String[] COLORS = {"red", "green", "blue", "yellow"};
+
+    @TempDir
+    static Path avatarsDir;
+
+    @DynamicPropertySource
+    static void avatarsDir(DynamicPropertyRegistry registry) {
+        registry.add("avatars.dir.path", avatarsDir::toString);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private AvatarContentRepository avatarContentRepository;
+
+    @Autowired
+    private AvatarDataRepository avatarDataRepository;
+
+    @Autowired
+    private AvatarService avatarService;
+
+    private final LoadProfile profile = LoadProfile.fromSystemProperties();
+
+    private List<Long> studentIds;
+
+    private List<Long> facultyIds;
+
+    /**
+     * Запрос из смеси: группа из load.mix, имя в отчете и путь, построенный по случайным данным
+     */
+    private record Operation(String group, String name, Function<Random, String> path) {
+    }
+
+    /**
+     * Задержки в микросекундах и число ошибок (исключение или статус 4xx/5xx) одной операции
+     */
+    private record Stats(Histogram latency, LongAdder errors) {
+
+        static Stats create() {
+            return new Stats(new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3), new LongAdder());
+        }
+
+    }
+
+    @BeforeEach
+    void seed() throws IOException {
+        cleanUp();
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < profile.faculties(); i++) {
+            faculties.add(new Faculty(null, "Faculty " + i, COLORS[i % COLORS.length]));
+        }
+        faculties = facultyRepository.saveAll(faculties);
+        facultyIds = faculties.stream().map(Faculty::getId).toList();
+
+        Random random = new Random(42);
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < profile.students(); i++) {
+            Student student = new Student(null, "Student " + i, 11 + random.nextInt(8));
+            student.setFaculty(faculties.get(i % faculties.size()));
+            students.add(student);
+        }
+        studentIds = studentRepository.saveAll(students).stream().map(Student::getId).toList();
+
+        for (Long id : studentIds.subList(0, Math.min(profile.avatars(), studentIds.size()))) {
+            byte[] content = new byte[4 * 1024 + random.nextInt(16 * 1024)];
+            random.nextBytes(content);
+            avatarService.uploadAvatar(id, new MockMultipartFile("avatar", "avatar.png", "image/png", content));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        avatarRepository.deleteAll();
+        avatarDataRepository.deleteAll();
+        avatarContentRepository.deleteAll();
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    private List<Operation> operations() {
+        int avatars = Math.min(profile.avatars(), studentIds.size());
+        return List.of(
+                new Operation("student", "GET /student/{id}", random -> "/student/" + randomOf(studentIds, random)),
+                new Operation("student", "GET /student/filterAge", random -> "/student/filterAge?age=" + (11 + random.nextInt(8))),
+                new Operation("student", "GET /student?limit=20", random -> "/student?limit=20"),
+                new Operation("faculty", "GET /faculty/{id}", random -> "/faculty/" + randomOf(facultyIds, random)),
+                new Operation("faculty", "GET /faculty/{id}?expand=students",
+                        random -> "/faculty/" + randomOf(facultyIds, random) + "?expand=students&size=20"),
+                new Operation("faculty", "GET /faculty/filterColor",
+                        random -> "/faculty/filterColor?color=" + COLORS[random.nextInt(COLORS.length)]),
+                new Operation("avatar", "GET /avatar/{id}/avatar/fromDB",
+                        random -> "/avatar/" + studentIds.get(random.nextInt(avatars)) + "/avatar/fromDB"),
+                new Operation("avatar", "GET /avatar/{id}/avatar/fromFile",
+                        random -> "/avatar/" + studentIds.get(random.nextInt(avatars)) + "/avatar/fromFile"));
+    }
+
+    @Test
+    @DisplayName("Задержки и ошибки под нагрузкой укладываются в пороги")
+    void loadTest() throws Exception {
+        List<Operation> operations = operations();
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        operations.forEach(operation -> stats.put(operation.name(), Stats.create()));
+        Stats total = Stats.create();
+
+        ExecutorService executor = Executors.newFixedThreadPool(profile.clients());
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+        Random random = new Random(7);
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / profile.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + profile.warmup().toNanos();
+        long end = measureFrom + profile.duration().toNanos();
+        try {
+            for (long i = 0; ; i++) {
+                long intendedStart = start + i * intervalNanos;
+                if (intendedStart >= end) {
+                    break;
+                }
+                long delay = intendedStart - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                Operation operation = pick(operations, random);
+                boolean measured = intendedStart >= measureFrom;
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + operation.path().apply(random)))
+                        .GET().build();
+                requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                        .handle((response, error) -> {
+                            if (measured) {
+                                long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart),
+                                        HIGHEST_TRACKABLE_MICROS);
+                                boolean failed = error != null || response.statusCode() >= 400;
+                                for (Stats target : List.of(stats.get(operation.name()), total)) {
+                                    target.latency().recordValue(micros);
+                                    if (failed) {
+                                        target.errors().increment();
+                                    }
+                                }
+                            }
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = profile.duration().toNanos() / 1e9;
+        writeReport(stats, total, seconds);
+
+        long count = total.latency().getTotalCount();
+        assertThat(count).as("requests sent during measurement").isGreaterThanOrEqualTo((long) (0.9 * profile.rate() * seconds));
+        assertThat((double) total.errors().sum() / count).as("error rate").isLessThanOrEqualTo(profile.maxErrorRate());
+        assertThat(total.latency().getValueAtPercentile(99.0)).as("p99, us")
+                .isLessThanOrEqualTo(TimeUnit.NANOSECONDS.toMicros(profile.maxP99().toNanos()));
+    }
+
+    private Operation pick(List<Operation> operations, Random random) {
+        int totalWeight = profile.mix().values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(totalWeight);
+        String group = null;
+        for (Map.Entry<String, Integer> weight : profile.mix().entrySet()) {
+            roll -= weight.getValue();
+            if (roll < 0) {
+                group = weight.getKey();
+                break;
+            }
+        }
+        String selected = group;
+        List<Operation> candidates = operations.stream().filter(operation -> operation.group().equals(selected)).toList();
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("Unknown group in load.mix: " + selected);
+        }
+        return candidates.get(random.nextInt(candidates.size()));
+    }
+
+    private static Long randomOf(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    /**
+     * Сводная таблица в report.txt и в лог, полные распределения задержек (мс) - в файлах .hgrm
+     */
+    private void writeReport(Map<String, Stats> stats, Stats total, double seconds) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        StringBuilder report = new StringBuilder()
+                .append(String.format("Profile: %s%n", profile))
+                .append(String.format("%-36s %8s %7s %10s %9s %9s %9s %9s%n",
+                        "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        Map<String, Stats> rows = new LinkedHashMap<>(stats);
+        rows.put("total", total);
+        for (Map.Entry<String, Stats> row : rows.entrySet()) {
+            Histogram latency = row.getValue().latency();
+            report.append(String.format("%-36s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    row.getKey(), latency.getTotalCount(), row.getValue().errors().sum(), latency.getTotalCount() / seconds,
+                    latency.getValueAtPercentile(50.0) / 1000.0, latency.getValueAtPercentile(99.0) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0));
+            Path distribution = REPORT_DIR.resolve(row.getKey().replaceAll("[^A-Za-z0-9]+", "_") + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(distribution), true, StandardCharsets.UTF_8)) {
+                latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        Files.writeString(REPORT_DIR.resolve("report.txt"), report);
+        logger.info("Load test report:\n{}", report);
+    }
+
+}
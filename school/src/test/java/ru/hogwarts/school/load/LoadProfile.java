@@ -0,0 +1,52 @@
+package ru.hogwarts.school.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста из системных свойств (mvn verify -Dload.rate=500 ...): <br/>
+ * load.students, load.faculties, load.avatars - размер набора данных; <br/>
+ * load.rate - запросов в секунду (открытая модель: запросы отправляются по расписанию, не дожидаясь ответов); <br/>
+ * load.clients - потоки HTTP-клиента; load.warmup, load.duration - прогрев и замер; <br/>
+ * load.mix - доли групп запросов, например student=6,faculty=3,avatar=1; <br/>
+ * load.max-p99, load.max-error-rate - пороги, при превышении которых тест падает. <br/>
+ * Значения по умолчанию рассчитаны на одноядерную сборочную машину, где клиент и сервер делят процессор: <br/>
+ * там p99 на 50 запросах в секунду - около 250 мс, порог p99 по умолчанию - 500 мс, вдвое выше
+ */
+record LoadProfile(int students, int faculties, int avatars, int rate, int clients, Duration warmup, Duration duration,
+                   Map<String, Integer> mix, Duration maxP99, double maxErrorRate) {
+
+    static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("load.students", 2_000),
+                Integer.getInteger("load.faculties", 20),
+                Integer.getInteger("load.avatars", 100),
+                Integer.getInteger("load.rate", 50),
+                Integer.getInteger("load.clients", 64),
+                duration("load.warmup", "5s"),
+                duration("load.duration", "10s"),
+                mix(System.getProperty("load.mix", "student=6,faculty=3,avatar=1")),
+                duration("load.max-p99", "500ms"),
+                Double.parseDouble(System.getProperty("load.max-error-rate", "0.01")));
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    private static Map<String, Integer> mix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] weight = part.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("load.mix must look like student=6,faculty=3,avatar=1: " + value);
+            }
+            mix.put(weight[0].trim(), Integer.parseInt(weight[1].trim()));
+        }
+        return mix;
+    }
+
+}
@@ -0,0 +1,99 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvatarCacheTest {
+
+    private final AvatarCache avatarCache = new AvatarCache(DataSize.ofBytes(300));
+
+    private void load(long studentId) {
+        if (avatarCache.get(studentId) == null) {
+            avatarCache.put(studentId, "hash" + studentId, "image/png", new byte[100], avatarCache.generation());
+        }
+    }
+
+    @Test
+    @DisplayName("Размер кэша не превышает лимит в байтах")
+    void weightIsBounded() {
+        for (long studentId = 1; studentId <= 5; studentId++) {
+            load(studentId);
+        }
+
+        AvatarCache.Stats stats = avatarCache.stats();
+        assertThat(stats.weightBytes()).isLessThanOrEqualTo(300);
+        assertThat(stats.size()).isEqualTo(3);
+        assertThat(stats.misses()).isEqualTo(5);
+        assertThat(stats.evictions()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Редкая запись не вытесняет популярные")
+    void frequentEntriesSurviveScan() {
+        for (int i = 0; i < 5; i++) {
+            load(1);
+            load(2);
+            load(3);
+        }
+        for (long studentId = 100; studentId < 110; studentId++) {
+            load(studentId);
+        }
+
+        assertThat(avatarCache.get(1)).isNotNull();
+        assertThat(avatarCache.get(2)).isNotNull();
+        assertThat(avatarCache.get(3)).isNotNull();
+        assertThat(avatarCache.stats().rejections()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Запись, прочитанная до сброса, в кэш не попадает")
+    void invalidateWinsOverConcurrentLoad() {
+        long generation = avatarCache.generation();
+        avatarCache.invalidate(1);
+        avatarCache.put(1, "stale", "image/png", new byte[10], generation);
+
+        assertThat(avatarCache.get(1)).isNull();
+    }
+
+    @Test
+    @DisplayName("Сброс аватара одного студента не мешает загрузке аватаров других")
+    void invalidateOfOtherStudentDoesNotBlockLoad() {
+        long generation = avatarCache.generation();
+        avatarCache.invalidate(2);
+        avatarCache.put(1, "hash1", "image/png", new byte[10], generation);
+
+        assertThat(avatarCache.get(1)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Если новая версия записи не допущена, прежняя запись студента остается в кэше")
+    void rejectedReplacementKeepsExistingEntry() {
+        load(1);
+        for (int i = 0; i < 5; i++) {
+            load(2);
+            load(3);
+        }
+
+        avatarCache.put(1, "bigger", "image/png", new byte[200], avatarCache.generation());
+
+        assertThat(avatarCache.get(1).hash()).isEqualTo("hash1");
+        assertThat(avatarCache.stats().weightBytes()).isEqualTo(300);
+        assertThat(avatarCache.stats().rejections()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Каждый читатель получает свою позицию буфера")
+    void readersDoNotShareBufferPosition() {
+        load(1);
+
+        AvatarCache.Entry first = avatarCache.get(1);
+        first.data().position(first.data().limit());
+
+        assertThat(avatarCache.get(1).data().remaining()).isEqualTo(100);
+        assertThat(first.data().isDirect()).isTrue();
+    }
+
+}
@@ -0,0 +1,209 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.model.AvatarData;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.repository.AvatarDataRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AvatarServiceTest {
+
+    @TempDir
+    static Path avatarsDir;
+
+    @DynamicPropertySource
+    static void avatarsDir(DynamicPropertyRegistry registry) {
+        registry.add("avatars.dir.path", avatarsDir::toString);
+    }
+
+    @Autowired
+    private AvatarService avatarService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private AvatarContentRepository avatarContentRepository;
+
+    @Autowired
+    private AvatarDataRepository avatarDataRepository;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        avatarRepository.deleteAll();
+        avatarDataRepository.deleteAll();
+        avatarContentRepository.deleteAll();
+        studentRepository.deleteAll();
+    }
+
+    private MockMultipartFile getTestFile(String content) {
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Одинаковые аватары хранятся в одном файле")
+    void identicalUploadsAreStoredOnce() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        Student ron = studentRepository.save(new Student(null, "Ron", 17));
+
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+        avatarService.uploadAvatar(ron.getId(), getTestFile("owl"));
+
+        assertThat(avatarContentRepository.findAll())
+                .singleElement()
+                .extracting(AvatarContent::getReferenceCount)
+                .isEqualTo(2L);
+        assertThat(avatarDataRepository.count()).isEqualTo(1);
+        Avatar harryAvatar = avatarService.findAvatar(harry.getId());
+        Avatar ronAvatar = avatarService.findAvatar(ron.getId());
+        assertThat(harryAvatar.getFilePath()).isEqualTo(ronAvatar.getFilePath());
+        assertThat(Path.of(harryAvatar.getFilePath()))
+                .hasContent("owl")
+                .startsWith(avatarsDir);
+        assertThat(avatarsDir.relativize(Path.of(harryAvatar.getFilePath())).getNameCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Загрузка без заявленного размера обрывается на превышении лимита")
+    void oversizedStreamIsRejected() {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        MockMultipartFile file = new MockMultipartFile("avatar", "avatar.png", "image/png", new byte[300 * 300]) {
+            @Override
+            public long getSize() {
+                return -1;
+            }
+        };
+
+        assertThatThrownBy(() -> avatarService.uploadAvatar(harry.getId(), file))
+                .isInstanceOf(AvatarTooLargeException.class);
+        assertThat(avatarContentRepository.count()).isZero();
+        assertThat(avatarsDir.resolve("tmp").toFile().list()).isNullOrEmpty();
+    }
+
+    @Test
+    @DisplayName("Байты аватара читаются из базы отдельно от метаданных")
+    void avatarDataIsLoadedSeparately() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+
+        Avatar avatar = avatarService.findAvatar(harry.getId());
+
+        assertThat(avatarService.findAvatarData(avatar)).hasValue("owl".getBytes(StandardCharsets.UTF_8));
+        assertThat(avatarService.findAvatarData(new Avatar())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Файл, на который больше никто не ссылается, удаляется")
+    void replacedContentIsCollected() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        Student ron = studentRepository.save(new Student(null, "Ron", 17));
+
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+        avatarService.uploadAvatar(ron.getId(), getTestFile("owl"));
+        Path owl = Path.of(avatarService.findAvatar(harry.getId()).getFilePath());
+
+        avatarService.uploadAvatar(harry.getId(), getTestFile("cat"));
+
+        assertThat(owl).exists();
+        assertThat(avatarContentRepository.findAll()).hasSize(2);
+
+        avatarService.uploadAvatar(ron.getId(), getTestFile("rat"));
+
+        assertThat(owl).exists();
+        assertThat(avatarService.sweepUnreferencedContent()).isEqualTo(1);
+        assertThat(owl).doesNotExist();
+        assertThat(avatarContentRepository.findAll())
+                .extracting(AvatarContent::getReferenceCount)
+                .containsExactly(1L, 1L);
+        assertThat(avatarDataRepository.findAll())
+                .extracting(AvatarData::getHash)
+                .containsExactlyInAnyOrderElementsOf(avatarContentRepository.findAll().stream().map(AvatarContent::getHash).toList());
+        assertThat(avatarsDir.resolve("tmp")).isEmptyDirectory();
+    }
+
+    @Test
+    @DisplayName("Содержимое без ссылок, загруженное снова до очистки, не удаляется")
+    void reacquiredContentSurvivesSweep() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+        Path owl = Path.of(avatarService.findAvatar(harry.getId()).getFilePath());
+        avatarService.uploadAvatar(harry.getId(), getTestFile("cat"));
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+
+        assertThat(avatarService.sweepUnreferencedContent()).isEqualTo(1);
+        assertThat(owl).hasContent("owl");
+        assertThat(avatarContentRepository.findAll())
+                .singleElement()
+                .extracting(AvatarContent::getReferenceCount)
+                .isEqualTo(1L);
+        assertThat(avatarService.findAvatarData(avatarService.findAvatar(harry.getId()))).hasValue("owl".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Path writeOld(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return makeOld(file);
+    }
+
+    private static Path makeOld(Path file) throws Exception {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        return file;
+    }
+
+    @Test
+    @DisplayName("Файлы, которых нет в AvatarContent, удаляются после грейс-периода")
+    void orphanFilesAreCollected() throws Exception {
+        Student harry = studentRepository.save(new Student(null, "Harry", 17));
+        avatarService.uploadAvatar(harry.getId(), getTestFile("owl"));
+        Path owl = makeOld(Path.of(avatarService.findAvatar(harry.getId()).getFilePath()));
+        Path legacy = writeOld(avatarsDir.resolve("legacy").resolve("hermione.png"), "cat");
+        avatarContentRepository.save(new AvatarContent("c".repeat(64), legacy.toString(), 3, 1));
+
+        Path mergedCopy = writeOld(avatarsDir.resolve("legacy").resolve("ron.png"), "owl");
+        String lostHash = "ab".repeat(32);
+        Path lostContent = writeOld(avatarsDir.resolve("ab").resolve("ab").resolve(lostHash), "rat");
+        Path lostRendition = writeOld(lostContent.resolveSibling(lostHash + "-48.png"), "rat");
+        Path abandonedUpload = writeOld(avatarsDir.resolve("tmp").resolve("upload-1.tmp"), "toad");
+        Path freshUpload = Files.writeString(avatarsDir.resolve("tmp").resolve("upload-2.tmp"), "toad");
+
+        assertThat(avatarService.sweepOrphanFiles()).isEqualTo(4);
+        assertThat(owl).hasContent("owl");
+        assertThat(legacy).hasContent("cat");
+        assertThat(freshUpload).exists();
+        assertThat(mergedCopy).doesNotExist();
+        assertThat(lostContent).doesNotExist();
+        assertThat(lostRendition).doesNotExist();
+        assertThat(abandonedUpload).doesNotExist();
+        Files.delete(freshUpload);
+    }
+
+}
@@ -0,0 +1,253 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.hogwarts.school.config.CacheConfig;
+import ru.hogwarts.school.listener.StudentAggregateListener;
+import ru.hogwarts.school.dto.FacultyView;
+import ru.hogwarts.school.dto.StudentView;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Режимы DATABASE, STREAM и MEMORY должны возвращать одинаковый результат
+ */
+@DataJpaTest
+@Import({CacheConfig.class, StudentAggregateListener.class, StudentAggregateService.class})
+class FilterModeTest {
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    /**
+     * Тест идет в откатываемой транзакции, до фиксации приращения агрегата не применяются - агрегат сверяется явно
+     */
+    @Autowired
+    private StudentAggregateService studentAggregateService;
+
+    private StudentService databaseStudentService;
+
+    private StudentService streamStudentService;
+
+    private StudentService memoryStudentService;
+
+    private Faculty gryffindor;
+
+    private FacultyService databaseFacultyService;
+
+    private FacultyService streamFacultyService;
+
+    private FacultyService memoryFacultyService;
+
+    @BeforeEach
+    void beforeEach() {
+        List<Faculty> faculties = facultyRepository.saveAll(List.of(
+                new Faculty(null, "Gryffindor", "red"),
+                new Faculty(null, "Slytherin", "green"),
+                new Faculty(null, "Hufflepuff", "yellow"),
+                new Faculty(null, "Ravenclaw", "blue"),
+                new Faculty(null, "Durmstrang", "red")));
+        gryffindor = faculties.get(0);
+        Student anna = new Student(null, "Анна", 20);
+        anna.setFaculty(gryffindor);
+        Student harry = new Student(null, "Harry", 17);
+        harry.setFaculty(gryffindor);
+        studentRepository.saveAll(List.of(
+                anna,
+                new Student(null, "Алексей", 21),
+                new Student(null, "Борис", 20),
+                harry));
+        studentAggregateService.reconcile();
+
+        databaseStudentService = new StudentService(studentRepository, FilterMode.DATABASE);
+        databaseStudentService.loadSnapshot();
+        streamStudentService = new StudentService(studentRepository, FilterMode.STREAM);
+        memoryStudentService = new StudentService(studentRepository, FilterMode.MEMORY);
+        memoryStudentService.loadSnapshot();
+        databaseFacultyService = new FacultyService(facultyRepository, studentRepository, FilterMode.DATABASE);
+        streamFacultyService = new FacultyService(facultyRepository, studentRepository, FilterMode.STREAM);
+        memoryFacultyService = new FacultyService(facultyRepository, studentRepository, FilterMode.MEMORY);
+        memoryFacultyService.loadCatalog();
+    }
+
+    @Test
+    @DisplayName("Фильтрация студентов по возрасту")
+    void filterAge() {
+        assertThat(databaseStudentService.filterAge(20))
+                .hasSize(2)
+                .containsExactlyInAnyOrderElementsOf(streamStudentService.filterAge(20))
+                .containsExactlyElementsOf(memoryStudentService.filterAge(20));
+    }
+
+    @Test
+    @DisplayName("Поиск студентов в диапазоне возрастов")
+    void findByAgeBetween() {
+        assertThat(databaseStudentService.findByAgeBetween(18, 21))
+                .hasSize(3)
+                .containsExactlyElementsOf(memoryStudentService.findByAgeBetween(18, 21));
+    }
+
+    @Test
+    @DisplayName("Гистограмма возрастов, в том числе по факультету")
+    void getAgeHistogram() {
+        assertThat(databaseStudentService.getAgeHistogram(null))
+                .containsExactly(entry(17, 1L), entry(20, 2L), entry(21, 1L))
+                .isEqualTo(streamStudentService.getAgeHistogram(null))
+                .isEqualTo(memoryStudentService.getAgeHistogram(null));
+        assertThat(databaseStudentService.getAgeHistogram(gryffindor.getId()))
+                .containsExactly(entry(17, 1L), entry(20, 1L))
+                .isEqualTo(streamStudentService.getAgeHistogram(gryffindor.getId()))
+                .isEqualTo(memoryStudentService.getAgeHistogram(gryffindor.getId()));
+    }
+
+    @Test
+    @DisplayName("Гистограмма с крайними возрастами не выделяет массив на весь диапазон")
+    void getAgeHistogramWithExtremeAges() {
+        Student ancient = studentRepository.save(new Student(null, "Николас", Integer.MAX_VALUE));
+        Student negative = studentRepository.save(new Student(null, "Мерлин", Integer.MIN_VALUE));
+        memoryStudentService.onStudentSaved(ancient);
+        memoryStudentService.onStudentSaved(negative);
+
+        assertThat(memoryStudentService.getAgeHistogram(null))
+                .containsExactly(entry(Integer.MIN_VALUE, 1L), entry(17, 1L), entry(20, 2L), entry(21, 1L), entry(Integer.MAX_VALUE, 1L))
+                .isEqualTo(databaseStudentService.getAgeHistogram(null));
+    }
+
+    @Test
+    @DisplayName("Снимок студентов обновляется после записи")
+    void snapshotFollowsWrites() {
+        Student ron = studentRepository.save(new Student(null, "Арон", 20));
+        memoryStudentService.onStudentSaved(ron);
+
+        assertThat(memoryStudentService.filterAge(20)).hasSize(3).contains(StudentView.of(ron));
+        assertThat(memoryStudentService.getStudentNamesStartingWithA()).containsExactly("АЛЕКСЕЙ", "АННА", "АРОН");
+
+        ron.setAge(30);
+        memoryStudentService.onStudentSaved(ron);
+
+        assertThat(memoryStudentService.filterAge(20)).hasSize(2);
+        assertThat(memoryStudentService.getAverageAgeAllStudents()).isEqualTo(21.6);
+
+        memoryStudentService.onStudentDeleted(ron.getId());
+
+        assertThat(memoryStudentService.getStudentNamesStartingWithA()).containsExactly("АЛЕКСЕЙ", "АННА");
+        assertThat(memoryStudentService.getAverageAgeAllStudents()).isEqualTo(19.5);
+    }
+
+    @Test
+    @DisplayName("Имена студентов, начинающиеся на А")
+    void getStudentNamesStartingWithA() {
+        studentRepository.saveAll(List.of(new Student(null, "арсений", 20), new Student(null, "Ёлкин", 20)))
+                .forEach(student -> {
+                    databaseStudentService.onStudentSaved(student);
+                    memoryStudentService.onStudentSaved(student);
+                });
+
+        assertThat(databaseStudentService.getStudentNamesStartingWithA())
+                .containsExactly("АЛЕКСЕЙ", "АННА")
+                .containsExactlyElementsOf(streamStudentService.getStudentNamesStartingWithA())
+                .containsExactlyElementsOf(memoryStudentService.getStudentNamesStartingWithA());
+    }
+
+    @Test
+    @DisplayName("Поиск имен по префиксу без учета регистра и различия Е/Ё")
+    void findNamesStartingWith() {
+        studentRepository.saveAll(List.of(
+                new Student(null, "Ёлкин", 20),
+                new Student(null, "Егор", 21),
+                new Student(null, "Hermione", 17))).forEach(databaseStudentService::onStudentSaved);
+
+        assertThat(databaseStudentService.findNamesStartingWith("а", 10)).containsExactly("Алексей", "Анна");
+        assertThat(databaseStudentService.findNamesStartingWith("АН", 10)).containsExactly("Анна");
+        assertThat(databaseStudentService.findNamesStartingWith("е", 10)).containsExactly("Егор", "Ёлкин");
+        assertThat(databaseStudentService.findNamesStartingWith("ёл", 10)).containsExactly("Ёлкин");
+        assertThat(databaseStudentService.findNamesStartingWith("h", 1)).containsExactly("Harry");
+        assertThat(databaseStudentService.findNamesStartingWith("z", 10)).isEmpty();
+        assertThat(streamStudentService.findNamesStartingWith("е", 10)).containsExactly("Егор", "Ёлкин");
+        assertThat(streamStudentService.findNamesStartingWith("а", 1)).containsExactly("Алексей");
+    }
+
+    @Test
+    @DisplayName("Средний возраст всех студентов")
+    void getAverageAgeAllStudents() {
+        assertThat(databaseStudentService.getAverageAgeAllStudents())
+                .isEqualTo(19.5)
+                .isEqualTo(streamStudentService.getAverageAgeAllStudents())
+                .isEqualTo(memoryStudentService.getAverageAgeAllStudents());
+    }
+
+    @Test
+    @DisplayName("Средний возраст при отсутствии студентов")
+    void getAverageAgeWithoutStudents() {
+        studentRepository.deleteAll();
+        studentAggregateService.reconcile();
+        memoryStudentService.loadSnapshot();
+
+        assertThat(databaseStudentService.getAverageAgeAllStudents())
+                .isEqualTo(0.0)
+                .isEqualTo(streamStudentService.getAverageAgeAllStudents())
+                .isEqualTo(memoryStudentService.getAverageAgeAllStudents());
+    }
+
+    @Test
+    @DisplayName("Фильтрация факультетов по цвету")
+    void filterColor() {
+        assertThat(databaseFacultyService.filterColor("red"))
+                .hasSize(2)
+                .containsExactlyInAnyOrderElementsOf(streamFacultyService.filterColor("red"))
+                .containsExactlyInAnyOrderElementsOf(memoryFacultyService.filterColor("red"));
+    }
+
+    @Test
+    @DisplayName("Поиск факультетов по названию или цвету без учета регистра")
+    void findByNameOrColor() {
+        assertThat(memoryFacultyService.findByNameOrColor("RED"))
+                .extracting(FacultyView::name)
+                .containsExactlyInAnyOrder("Gryffindor", "Durmstrang");
+        assertThat(memoryFacultyService.findByNameOrColor("slytherin"))
+                .containsExactlyInAnyOrderElementsOf(databaseFacultyService.findByNameOrColor("Slytherin"));
+        assertThat(memoryFacultyService.findByNameOrColor(" red "))
+                .isEmpty();
+        assertThat(databaseFacultyService.findByNameOrColor(" red "))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Снимок факультетов обновляется после записи")
+    void catalogFollowsWrites() {
+        Faculty beauxbatons = facultyRepository.save(new Faculty(null, "Beauxbatons Academy", "blue"));
+        memoryFacultyService.onFacultySaved(beauxbatons);
+
+        assertThat(memoryFacultyService.filterColor("blue")).hasSize(2).contains(FacultyView.of(beauxbatons));
+        assertThat(memoryFacultyService.getLongestFacultyName()).isEqualTo("Beauxbatons Academy");
+
+        memoryFacultyService.onFacultyDeleted(beauxbatons.getId());
+
+        assertThat(memoryFacultyService.filterColor("blue")).hasSize(1).doesNotContain(FacultyView.of(beauxbatons));
+        assertThat(memoryFacultyService.getLongestFacultyName()).isEqualTo("Gryffindor");
+    }
+
+    @Test
+    @DisplayName("Самое длинное название факультета")
+    void getLongestFacultyName() {
+        assertThat(databaseFacultyService.getLongestFacultyName())
+                .isEqualTo("Gryffindor")
+                .isEqualTo(streamFacultyService.getLongestFacultyName())
+                .isEqualTo(memoryFacultyService.getLongestFacultyName());
+    }
+
+}